@@ -0,0 +1,62 @@
+package com.practice.querydsl.bench;
+
+import com.practice.querydsl.PracQueryApplication;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크마다 인메모리 H2 위에 애플리케이션 컨텍스트를 띄우고 데이터를 채운다.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String name, String... properties) {
+        return new SpringApplicationBuilder(PracQueryApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.profiles.active=bench",
+                        "spring.datasource.url=jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1",
+                        "logging.level.org.hibernate.SQL=warn")
+                .properties(properties)
+                .run();
+    }
+
+    public static void seed(ConfigurableApplicationContext context, int teamCount, int memberCount) {
+        EntityManager em = context.getBean(EntityManager.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        List<Long> teamIds = tx.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < teamCount; i++) {
+                Team team = new Team("team" + i);
+                em.persist(team);
+                ids.add(team.getId());
+            }
+            return ids;
+        });
+
+        int batchSize = 1000;
+        for (int from = 0; from < memberCount; from += batchSize) {
+            int start = from;
+            int end = Math.min(from + batchSize, memberCount);
+            tx.executeWithoutResult(status -> {
+                for (int i = start; i < end; i++) {
+                    Member member = new Member("member" + i, i % 100);
+                    member.setTeam(em.getReference(Team.class, teamIds.get(i % teamIds.size())));
+                    em.persist(member);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.practice.querydsl.bench;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.repository.MemberColumnarSnapshot;
+import com.practice.querydsl.repository.MemberJpaRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+
+/**
+ * 나이/팀 조건 검색: 인메모리 컬럼 스냅샷 vs DB
+ */
+@State(Scope.Benchmark)
+public class ColumnarSnapshotBenchmark {
+
+    @Param({"100000"})
+    private int memberCount;
+
+    @Param({"10"})
+    private int teamCount;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberColumnarSnapshot snapshot;
+
+    private MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("columnarSnapshot", "member.search.columnar.enabled=true");
+        BenchmarkContext.seed(context, teamCount, memberCount);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        snapshot = context.getBean(MemberColumnarSnapshot.class);
+        snapshot.rebuild();
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MemberColumnarSnapshot.Stats stats = snapshot.stats();
+        System.out.printf("%nsnapshot: %d rows, ~%d KB%n", stats.getRows(), stats.getEstimatedBytes() / 1024);
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> snapshot() {
+        return snapshot.search(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> database() {
+        return memberJpaRepository.search(condition);
+    }
+}
@@ -0,0 +1,124 @@
+package com.practice.querydsl.bench;
+
+import com.practice.querydsl.dto.MemberDto;
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.dto.QMemberDto;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.repository.MemberJdbcSearch;
+import com.practice.querydsl.repository.MemberJpaRepository;
+import com.querydsl.core.types.Projections;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+
+import static com.practice.querydsl.model.QMember.member;
+
+/**
+ * MemberJpaRepository 의 조회 경로와 QueryDslBasicTest 의 프로젝션 방식들을 같은 데이터로 비교한다.
+ */
+@State(Scope.Benchmark)
+public class MemberQueryBenchmark {
+
+    @Param({"10000"})
+    private int memberCount;
+
+    @Param({"10"})
+    private int teamCount;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private MemberJdbcSearch memberJdbcSearch;
+    private JPAQueryFactory queryFactory;
+
+    private MemberSearchCondition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("memberQuery");
+        BenchmarkContext.seed(context, teamCount, memberCount);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        memberJdbcSearch = context.getBean(MemberJdbcSearch.class);
+        queryFactory = context.getBean(JPAQueryFactory.class);
+
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team1");
+        condition.setAgeGoe(20);
+        condition.setAgeLoe(40);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchTemplate() {
+        return memberJpaRepository.search(condition);
+    }
+
+    // 같은 쿼리를 매번 Querydsl 로 만들고 직렬화한다. searchTemplate 과의 차이가 템플릿 캐시로 아낀 시간
+    @Benchmark
+    public List<MemberTeamDto> searchBooleanBuilder() {
+        return memberJpaRepository.searchByBuilder(condition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> searchJdbc() {
+        return memberJdbcSearch.search(condition);
+    }
+
+    @Benchmark
+    public List<Member> findByUsernameJpql() {
+        return memberJpaRepository.findByUsername("member42");
+    }
+
+    @Benchmark
+    public List<Member> findByUsernameQueryDsl() {
+        return memberJpaRepository.findByUsername_QueryDsl("member42");
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionBean() {
+        return queryFactory
+                .select(Projections.bean(MemberDto.class, member.username, member.age))
+                .from(member)
+                .where(member.age.between(20, 40))
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionFields() {
+        return queryFactory
+                .select(Projections.fields(MemberDto.class, member.username, member.age))
+                .from(member)
+                .where(member.age.between(20, 40))
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionConstructor() {
+        return queryFactory
+                .select(Projections.constructor(MemberDto.class, member.username, member.age))
+                .from(member)
+                .where(member.age.between(20, 40))
+                .fetch();
+    }
+
+    @Benchmark
+    public List<MemberDto> projectionQueryProjection() {
+        return queryFactory
+                .select(new QMemberDto(member.username, member.age))
+                .from(member)
+                .where(member.age.between(20, 40))
+                .fetch();
+    }
+}
@@ -0,0 +1,121 @@
+package com.practice.querydsl.bench;
+
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.repository.MemberJpaRepository;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 쓰기 트랜잭션 안에서 회원과 팀을 fetch join 으로 읽을 때 managed / read-only / stateless 의 비용 비교.
+ * 할당량은 gc 프로파일러의 gc.alloc.rate.norm 으로 본다. read-only 도 hydrated state 배열은 만들기 때문에 할당량은 비슷하고,
+ * 차이는 트랜잭션이 끝날 때까지 붙잡고 있는 스냅샷이다. 그래서 로딩 전후로 GC 후 사용 힙을 재서(측정 구간 밖,
+ * 트랜잭션은 열린 채로) 결과 + 영속 컨텍스트의 잔류 크기를 AuxCounters 의 retainedBytesPer100k 로 보고한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadOnlyLoadBenchmark {
+
+    @Param({"100000"})
+    private int memberCount;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private EntityManager em;
+    private PlatformTransactionManager transactionManager;
+
+    // 호출마다 트랜잭션을 측정 구간 밖에서 열고, 로딩 결과를 붙잡은 채로 잔류 힙을 잰 뒤에 닫는다.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Loaded {
+
+        public long members;
+        public long managedEntities;
+        public long retainedBytesPer100k;
+
+        private TransactionStatus transaction;
+        private long baseline;
+        private List<Member> result;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            members = 0;
+            managedEntities = 0;
+            retainedBytesPer100k = 0;
+        }
+
+        @Setup(Level.Invocation)
+        public void begin(ReadOnlyLoadBenchmark benchmark) {
+            baseline = usedHeapAfterGc();
+            transaction = benchmark.transactionManager.getTransaction(new DefaultTransactionDefinition());
+        }
+
+        @TearDown(Level.Invocation)
+        public void end(ReadOnlyLoadBenchmark benchmark) {
+            try {
+                long retained = usedHeapAfterGc() - baseline;
+                members += result.size();
+                managedEntities += benchmark.em.unwrap(Session.class).getStatistics().getEntityCount();
+                retainedBytesPer100k += result.isEmpty() ? 0 : retained * 100_000 / result.size();
+            } finally {
+                result = null;
+                benchmark.transactionManager.rollback(transaction);
+            }
+        }
+
+        private static long usedHeapAfterGc() {
+            Runtime runtime = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("readOnlyLoad");
+        BenchmarkContext.seed(context, 10, memberCount);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        em = context.getBean(EntityManager.class);
+        transactionManager = context.getBean(PlatformTransactionManager.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void managed(Loaded loaded) {
+        loaded.result = memberJpaRepository.findAllWithTeam();
+    }
+
+    @Benchmark
+    public void readOnly(Loaded loaded) {
+        loaded.result = memberJpaRepository.findAllWithTeam_ReadOnly();
+    }
+
+    @Benchmark
+    public void stateless(Loaded loaded) {
+        loaded.result = memberJpaRepository.findAllWithTeam_Stateless();
+    }
+}
@@ -0,0 +1,92 @@
+package com.practice.querydsl.bench;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.dto.QMemberTeamDto;
+import com.practice.querydsl.dto.UsernameMatch;
+import com.practice.querydsl.repository.MemberJpaRepository;
+import com.practice.querydsl.repository.UsernameTrigramIndex;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+
+import static com.practice.querydsl.model.QMember.member;
+import static com.practice.querydsl.model.QTeam.team;
+
+/**
+ * username 검색 방식 비교: 정확히 일치 / prefix(인덱스) / contains(trigram 색인) / contains(순수 like)
+ */
+@State(Scope.Benchmark)
+public class UsernameSearchBenchmark {
+
+    @Param({"100000"})
+    private int memberCount;
+
+    // 데이터는 "member" + i 형태
+    @Param({"ber4242"})
+    private String keyword;
+
+    private ConfigurableApplicationContext context;
+    private MemberJpaRepository memberJpaRepository;
+    private JPAQueryFactory queryFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("usernameSearch");
+        BenchmarkContext.seed(context, 10, memberCount);
+        context.getBean(UsernameTrigramIndex.class).rebuild();
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        queryFactory = context.getBean(JPAQueryFactory.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> exact() {
+        return memberJpaRepository.search(condition("member4242", UsernameMatch.EXACT));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> prefix() {
+        return memberJpaRepository.search(condition("member4242", UsernameMatch.PREFIX));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> containsTrigram() {
+        return memberJpaRepository.search(condition(keyword, UsernameMatch.CONTAINS));
+    }
+
+    // containsTrigram 과 같은 프로젝션, 같은 조인에서 후보 id 조건만 뺀 쿼리
+    @Benchmark
+    public List<MemberTeamDto> containsPlainLike() {
+        return queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(member.username.contains(keyword))
+                .fetch();
+    }
+
+    private MemberSearchCondition condition(String username, UsernameMatch match) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setUsernameMatch(match);
+        return condition;
+    }
+}
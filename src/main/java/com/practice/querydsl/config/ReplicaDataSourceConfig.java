@@ -0,0 +1,84 @@
+package com.practice.querydsl.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * member.datasource.replica.url 이 있을 때만 primary/replica 라우팅을 켠다.
+ * 로컬에서는 replica url 을 primary 와 같은 H2 DB 로 지정해서(별도의 읽기 전용 풀) 확인한다.
+ * 스키마(ddl-auto)와 초기 데이터(InitMember)는 primary 에만 만들어지므로, 다른 DB 를 지정하려면 실제로 복제되는 DB 여야 한다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "member.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                       @Value("${member.datasource.replica.url}") String url,
+                                       @Value("${member.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                       @Value("${member.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                       @Value("${member.datasource.replica.maximum-pool-size:10}") int maximumPoolSize) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    ReplicaRoutingDataSource replicaRoutingDataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                                      @Qualifier("replicaDataSource") DataSource replica,
+                                                      @Value("${member.datasource.replica.max-lag:1s}") Duration maxLag,
+                                                      MeterRegistry registry) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replica, maxLag.toNanos());
+        FunctionCounter.builder("member.datasource.replica.reads", routing, ReplicaRoutingDataSource::getReplicaReads)
+                .register(registry);
+        FunctionCounter.builder("member.datasource.replica.lag.fallbacks", routing, ReplicaRoutingDataSource::getLagFallbacks)
+                .register(registry);
+        return routing;
+    }
+
+    // QueryCountInspector 를 감싸므로 그 customizer(HIGHEST_PRECEDENCE) 다음에 적용된다.
+    @Bean
+    HibernatePropertiesCustomizer replicaWriteInspectorCustomizer(ReplicaRoutingDataSource routing) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new ReplicaWriteInspector(
+                routing, (StatementInspector) properties.get(AvailableSettings.STATEMENT_INSPECTOR)));
+    }
+
+    @Primary
+    @Bean
+    DataSource dataSource(ReplicaRoutingDataSource routing) {
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,87 @@
+package com.practice.querydsl.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 읽기 전용 트랜잭션은 replica 로, 나머지는 primary 로 보낸다.
+ * <ul>
+ *     <li>읽기 전용 메서드가 쓰기 트랜잭션에 참여하면 그 트랜잭션의 커넥션(primary)을 그대로 쓰므로 자기가 쓴 값을 읽는다.</li>
+ *     <li>마지막 쓰기 커밋 이후 maxLag 동안은 replica 가 따라오지 못했을 수 있으니 읽기도 primary 로 보낸다.
+ *     쓰기 커밋은 DML 을 실행한 트랜잭션만 남긴다(ReplicaWriteInspector). 읽기만 한 쓰기 트랜잭션은 replica 를 막지 않는다.</li>
+ * </ul>
+ * 트랜잭션 시작 시점에는 읽기 전용 여부가 아직 설정되지 않으므로 LazyConnectionDataSourceProxy 로 감싸서 사용한다.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final long maxLagNanos;
+    private final AtomicLong lastWriteCommit;
+
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong lagFallbacks = new AtomicLong();
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, long maxLagNanos) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(Target.PRIMARY, primary);
+        targets.put(Target.REPLICA, replica);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.maxLagNanos = maxLagNanos;
+        this.lastWriteCommit = new AtomicLong(System.nanoTime() - maxLagNanos);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Target.PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        if (System.nanoTime() - lastWriteCommit.get() < maxLagNanos) {
+            lagFallbacks.incrementAndGet();
+            return Target.PRIMARY;
+        }
+        replicaReads.incrementAndGet();
+        return Target.REPLICA;
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    public long getLagFallbacks() {
+        return lagFallbacks.get();
+    }
+
+    // 현재 트랜잭션이 DML 을 실행했다. 커밋되면 그 시각부터 maxLag 동안 읽기를 primary 로 보낸다.
+    public void markWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lastWriteCommit.set(System.nanoTime());
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReplicaRoutingDataSource.this);
+            }
+        });
+    }
+}
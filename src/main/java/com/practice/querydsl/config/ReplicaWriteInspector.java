@@ -0,0 +1,35 @@
+package com.practice.querydsl.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Hibernate 가 준비하는 DML(엔티티 flush, 벌크 JPQL, 네이티브 쿼리)을 보고 트랜잭션에 쓰기 표시를 한다.
+// Hibernate 를 거치지 않는 JDBC 쓰기는 보이지 않는다. 기존 inspector(QueryCountInspector)는 감싸서 그대로 호출한다.
+class ReplicaWriteInspector implements StatementInspector {
+
+    private final ReplicaRoutingDataSource routing;
+    private final StatementInspector delegate;
+
+    ReplicaWriteInspector(ReplicaRoutingDataSource routing, StatementInspector delegate) {
+        this.routing = routing;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String inspected = delegate != null ? delegate.inspect(sql) : sql;
+        if (isWrite(inspected)) {
+            routing.markWrite();
+        }
+        return inspected;
+    }
+
+    static boolean isWrite(String sql) {
+        String head = sql.trim();
+        return startsWith(head, "insert") || startsWith(head, "update")
+                || startsWith(head, "delete") || startsWith(head, "merge");
+    }
+
+    private static boolean startsWith(String sql, String keyword) {
+        return sql.regionMatches(true, 0, keyword, 0, keyword.length());
+    }
+}
@@ -3,13 +3,18 @@ package com.practice.querydsl.controller;
 import com.practice.querydsl.model.Member;
 import com.practice.querydsl.model.Team;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
 
 @Profile("local")
 @Component
@@ -23,24 +28,83 @@ public class InitMember {
         initMemberService.init();
     }
 
+    @Slf4j
     @Component
     static class InitMemberService{
         @PersistenceContext
         private EntityManager entityManager;
 
-        @Transactional
+        private final TransactionTemplate transactionTemplate;
+
+        @Value("${member.init.team-count:2}")
+        private int teamCount;
+        @Value("${member.init.member-count:100}")
+        private int memberCount;
+        @Value("${member.init.batch-size:1000}")
+        private int batchSize; // 이 단위로 flush/clear
+        @Value("${member.init.batches-per-transaction:10}")
+        private int batchesPerTransaction; // 트랜잭션 하나가 너무 커지지 않도록 나눠서 커밋
+
+        InitMemberService(PlatformTransactionManager transactionManager) {
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+        }
+
         public void init(){
-            Team teamA = new Team("teamA");
-            Team teamB = new Team("teamB");
+            long start = System.nanoTime();
 
-            entityManager.persist(teamA);
-            entityManager.persist(teamB);
+            List<Long> teamIds = transactionTemplate.execute(status -> {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < teamCount; i++) {
+                    Team team = new Team(teamName(i));
+                    entityManager.persist(team);
+                    ids.add(team.getId());
+                }
+                return ids;
+            });
 
-            for(int i = 0; i < 100; i++){
-                Team selectedTeam = i % 2 == 0 ? teamA : teamB;
-                entityManager.persist(new Member("member" + i , i , selectedTeam));
+            int rowsPerTransaction = batchSize * batchesPerTransaction;
+            for (int from = 0; from < memberCount; from += rowsPerTransaction) {
+                int to = Math.min(from + rowsPerTransaction, memberCount);
+                int chunkFrom = from;
+                transactionTemplate.executeWithoutResult(status -> insertMembers(teamIds, chunkFrom, to));
             }
 
+            long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            log.info("seeded {} teams, {} members in {} ms ({} rows/s, batch-size={})",
+                    teamCount, memberCount, elapsedMillis,
+                    (teamCount + memberCount) * 1000L / elapsedMillis, batchSize);
+        }
+
+        private void insertMembers(List<Long> teamIds, int from, int to) {
+            List<Team> teams = loadTeams(teamIds);
+            for (int i = from; i < to; i++) {
+                Member member = new Member("member" + i, i % 100);
+                if (!teams.isEmpty()) {
+                    // changeTeam 은 팀의 members 컬렉션까지 건드려 프록시를 초기화하므로 FK 만 세팅한다.
+                    member.setTeam(teams.get(i % teams.size()));
+                }
+                entityManager.persist(member);
+
+                if ((i + 1 - from) % batchSize == 0) {
+                    // 쌓인 insert 를 JDBC 배치로 내보내고 영속 컨텍스트를 비운다.
+                    entityManager.flush();
+                    entityManager.clear();
+                    teams = loadTeams(teamIds);
+                }
+            }
+        }
+
+        // clear 이후에는 팀이 준영속이 되므로 프록시로 다시 얻는다. (select 없이 id 만 사용)
+        private List<Team> loadTeams(List<Long> teamIds) {
+            List<Team> teams = new ArrayList<>(teamIds.size());
+            for (Long id : teamIds) {
+                teams.add(entityManager.getReference(Team.class, id));
+            }
+            return teams;
+        }
+
+        private String teamName(int index) {
+            return index < 26 ? "team" + (char) ('A' + index) : "team" + index;
         }
     }
 }
@@ -1,26 +1,143 @@
 package com.practice.querydsl.controller;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.practice.querydsl.dto.MemberCursor;
+import com.practice.querydsl.dto.MemberCursorPage;
 import com.practice.querydsl.dto.MemberSearchCondition;
 import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.dto.SearchPath;
+import com.practice.querydsl.repository.MemberAsyncSearch;
+import com.practice.querydsl.repository.MemberDataVersion;
 import com.practice.querydsl.repository.MemberJpaRepository;
+import com.practice.querydsl.service.MemberSearchService;
+import com.practice.querydsl.service.SearchOverloadedException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final MemberJpaRepository memberJpaRepository;
+    private final MemberSearchService memberSearchService;
+    private final MemberAsyncSearch memberAsyncSearch;
+    private final MemberDataVersion memberDataVersion;
+    private final ObjectMapper objectMapper;
+
+    @Value("${member.stream.fetch-size:500}")
+    private int streamFetchSize;
 
+    @Value("${member.search.async.timeout:3s}")
+    private Duration asyncSearchTimeout;
 
+
+    // 데이터 버전 + 조건으로 ETag 를 만든다. 그대로면 쿼리 없이 304 (버전은 쿼리 전에 읽어야 한다)
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCondition condition){
-        return memberJpaRepository.search(condition);
+    public ResponseEntity<List<MemberTeamDto>> searchMemberV1(MemberSearchCondition condition,
+                                                              @RequestParam(defaultValue = "JPA") SearchPath path,
+                                                              WebRequest request){
+        String etag = memberDataVersion.etag(condition);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(memberSearchService.search(condition, path));
+
+    }
+
+    @GetMapping("/v2/members")
+    public MemberCursorPage searchMemberV2(MemberSearchCondition condition,
+                                           @RequestParam(defaultValue = "ID") MemberCursor.Order orderBy,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "20") int size){
+        MemberCursor after = cursor != null ? MemberCursor.decode(cursor) : null;
+        return memberSearchService.searchByCursor(condition, orderBy, after, clampSize(size));
+    }
+
+    @GetMapping("/v3/members")
+    public Page<MemberTeamDto> searchMemberV3(MemberSearchCondition condition, Pageable pageable){
+        return memberSearchService.searchPage(condition, pageable);
+    }
+
+    // content 와 count 를 동시에 실행한다.
+    @GetMapping("/v4/members")
+    public CompletableFuture<Page<MemberTeamDto>> searchMemberV4(MemberSearchCondition condition, Pageable pageable){
+        return memberAsyncSearch.searchPage(condition, pageable, asyncSearchTimeout);
+    }
+
+    // 한 줄에 한 건씩(NDJSON) 쓰기 때문에 결과 크기와 상관없이 힙 사용량이 일정하다.
+    @GetMapping("/v1/members/stream")
+    public ResponseEntity<StreamingResponseBody> streamMemberV1(MemberSearchCondition condition){
+        ObjectWriter writer = objectMapper.writerFor(MemberTeamDto.class);
+        StreamingResponseBody body = out -> {
+            OutputStream buffered = new BufferedOutputStream(out, 8192);
+            try {
+                memberJpaRepository.searchEach(condition, streamFetchSize, row -> {
+                    try {
+                        buffered.write(writer.writeValueAsBytes(row));
+                        buffered.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            buffered.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String badRequest(IllegalArgumentException e){
+        return e.getMessage();
+    }
+
+    @ExceptionHandler({TimeoutException.class, RejectedExecutionException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String searchUnavailable(Exception e){
+        return e.getMessage();
+    }
+
+    // 기다리게 하지 않고 바로 돌려보낸다. 클라이언트는 Retry-After 뒤에 다시 시도한다.
+    @ExceptionHandler(SearchOverloadedException.class)
+    public ResponseEntity<String> searchOverloaded(SearchOverloadedException e){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
 
+    private int clampSize(int size){
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
     }
 
 }
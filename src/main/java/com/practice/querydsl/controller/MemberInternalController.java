@@ -0,0 +1,148 @@
+package com.practice.querydsl.controller;
+
+import com.practice.querydsl.dto.BulkOperationResult;
+import com.practice.querydsl.dto.MemberExportStatus;
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.QueryPlanDto;
+import com.practice.querydsl.repository.MemberColumnarSnapshot;
+import com.practice.querydsl.repository.MemberQueryPlanInspector;
+import com.practice.querydsl.repository.MemberSearchQueryCache;
+import com.practice.querydsl.repository.TeamStatsMaintainer;
+import com.practice.querydsl.service.MemberBulkService;
+import com.practice.querydsl.service.MemberExportService;
+import com.practice.querydsl.service.MemberSearchCoalescer;
+import com.practice.querydsl.service.MemberSearchLimiter;
+import com.practice.querydsl.service.MemberSearchResultCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
+
+// 운영 확인용 내부 엔드포인트
+@RestController
+@RequestMapping("/internal")
+@RequiredArgsConstructor
+public class MemberInternalController {
+
+    private final MemberSearchQueryCache searchQueryCache;
+    private final MemberSearchResultCache searchResultCache;
+    private final MemberColumnarSnapshot columnarSnapshot;
+    private final MemberSearchCoalescer searchCoalescer;
+    private final MemberSearchLimiter searchLimiter;
+    private final MemberQueryPlanInspector queryPlanInspector;
+    private final TeamStatsMaintainer teamStatsMaintainer;
+    private final MemberBulkService memberBulkService;
+    private final MemberExportService memberExportService;
+
+    @GetMapping("/search-query-cache")
+    public MemberSearchQueryCache.Stats searchQueryCacheStats(){
+        return searchQueryCache.stats();
+    }
+
+    @GetMapping("/search-result-cache")
+    public MemberSearchResultCache.Stats searchResultCacheStats(){
+        return searchResultCache.stats();
+    }
+
+    @GetMapping("/search-coalescing")
+    public MemberSearchCoalescer.Stats searchCoalescingStats(){
+        return searchCoalescer.stats();
+    }
+
+    @GetMapping("/search-limiter")
+    public MemberSearchLimiter.Stats searchLimiterStats(){
+        return searchLimiter.stats();
+    }
+
+    @GetMapping("/member-snapshot")
+    public MemberColumnarSnapshot.Stats memberSnapshotStats(){
+        return columnarSnapshot.stats();
+    }
+
+    @GetMapping("/members/explain")
+    public QueryPlanDto explainSearch(MemberSearchCondition condition){
+        return queryPlanInspector.explain(condition);
+    }
+
+    @PostMapping("/team-stats/rebuild")
+    public void rebuildTeamStats(){
+        teamStatsMaintainer.rebuildAll();
+    }
+
+    // 조건 없이 호출하면 400 (전체 회원을 바꾸지 않도록)
+    @PostMapping("/members/bulk/age")
+    public BulkOperationResult bulkAddAge(MemberSearchCondition condition, @RequestParam int amount){
+        return memberBulkService.addAge(condition, amount);
+    }
+
+    @DeleteMapping("/members/bulk")
+    public BulkOperationResult bulkDelete(MemberSearchCondition condition){
+        return memberBulkService.delete(condition);
+    }
+
+    // 백그라운드에서 CSV 로 내보낸다. 상태는 Location 으로 조회
+    @PostMapping("/members/export")
+    public ResponseEntity<MemberExportStatus> startExport(MemberSearchCondition condition){
+        MemberExportStatus status = memberExportService.start(condition);
+        return ResponseEntity.accepted()
+                .location(URI.create("/internal/members/export/" + status.getId()))
+                .body(status);
+    }
+
+    @GetMapping("/members/export/{id}")
+    public ResponseEntity<MemberExportStatus> exportStatus(@PathVariable String id){
+        return ResponseEntity.of(memberExportService.status(id));
+    }
+
+    @DeleteMapping("/members/export/{id}")
+    public ResponseEntity<MemberExportStatus> cancelExport(@PathVariable String id){
+        return ResponseEntity.of(memberExportService.cancel(id));
+    }
+
+    @GetMapping("/members/export/{id}/file")
+    public ResponseEntity<Resource> downloadExport(@PathVariable String id){
+        return memberExportService.file(id)
+                .map(file -> ResponseEntity.ok()
+                        .contentType(new MediaType("text", "csv"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION,
+                                ContentDisposition.attachment().filename("members-" + id + ".csv").build().toString())
+                        .<Resource>body(new FileSystemResource(file)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String badRequest(IllegalArgumentException e){
+        return e.getMessage();
+    }
+
+    // 아직 끝나지 않은 작업의 파일 요청
+    @ExceptionHandler(IllegalStateException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String exportNotReady(IllegalStateException e){
+        return e.getMessage();
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String exportRejected(RejectedExecutionException e){
+        return e.getMessage();
+    }
+
+}
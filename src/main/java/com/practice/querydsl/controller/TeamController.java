@@ -0,0 +1,30 @@
+package com.practice.querydsl.controller;
+
+import com.practice.querydsl.dto.TeamMembersDto;
+import com.practice.querydsl.dto.TeamStatsDto;
+import com.practice.querydsl.repository.TeamQueryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+
+    private final TeamQueryRepository teamQueryRepository;
+
+    @GetMapping("/v1/teams")
+    public Page<TeamMembersDto> teamsWithMembers(Pageable pageable){
+        return teamQueryRepository.findTeamsWithMembers(pageable);
+    }
+
+    @GetMapping("/v1/teams/stats")
+    public List<TeamStatsDto> teamStats(){
+        return teamQueryRepository.findTeamStats();
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.practice.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkOperationResult {
+
+    private List<Long> rowsPerChunk = new ArrayList<>();
+    private long totalRows;
+    private int evicted; // 호출한 쪽 영속 컨텍스트에서 분리된 엔티티 수
+    private long elapsedMillis;
+    private boolean interrupted;
+
+    public void addChunk(long rows) {
+        rowsPerChunk.add(rows);
+        totalRows += rows;
+    }
+}
@@ -0,0 +1,57 @@
+package com.practice.querydsl.dto;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 키셋(seek) 페이징용 커서. 클라이언트에는 불투명한 토큰으로만 노출한다.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class MemberCursor {
+
+    public enum Order {
+        ID,  // member.id asc
+        AGE  // member.age asc, member.id asc
+    }
+
+    private final Order order;
+    private final Integer age;
+    private final Long memberId;
+
+    public static MemberCursor after(Order order, MemberTeamDto last) {
+        return new MemberCursor(order, order == Order.AGE ? last.getAge() : null, last.getMemberId());
+    }
+
+    public String encode() {
+        String raw = order == Order.AGE
+                ? order.name() + ":" + age + ":" + memberId
+                : order.name() + ":" + memberId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MemberCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            Order order = Order.valueOf(parts[0]);
+            if (order == Order.AGE && parts.length == 3) {
+                return new MemberCursor(order, Integer.valueOf(parts[1]), Long.valueOf(parts[2]));
+            }
+            if (order == Order.ID && parts.length == 2) {
+                return new MemberCursor(order, null, Long.valueOf(parts[1]));
+            }
+        } catch (IllegalArgumentException e) { // NumberFormatException 포함
+            throw new IllegalArgumentException("invalid cursor: " + token, e);
+        }
+        throw new IllegalArgumentException("invalid cursor: " + token);
+    }
+}
@@ -0,0 +1,15 @@
+package com.practice.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class MemberCursorPage {
+
+    private List<MemberTeamDto> content;
+    private String nextCursor; // 마지막 페이지면 null
+    private boolean hasNext;
+}
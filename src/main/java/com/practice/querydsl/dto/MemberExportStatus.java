@@ -0,0 +1,25 @@
+package com.practice.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MemberExportStatus {
+
+    public enum State { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private String id;
+    private State state;
+    private long rowsWritten;
+    private long totalRows;   // 시작 시 count 결과. 진행 중 추가/삭제가 있으면 rowsWritten 과 다를 수 있다.
+    private long bytesWritten;
+    private String error;
+
+    public double getProgress() {
+        if (state == State.COMPLETED) {
+            return 1.0;
+        }
+        return totalRows == 0 ? 0.0 : Math.min(1.0, (double) rowsWritten / totalRows);
+    }
+}
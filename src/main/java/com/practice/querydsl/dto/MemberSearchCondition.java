@@ -2,6 +2,8 @@ package com.practice.querydsl.dto;
 
 import lombok.Data;
 
+import static org.springframework.util.StringUtils.hasText;
+
 @Data
 public class MemberSearchCondition {
     //회원명 , 팀명  , 나이 (ageGoe , ageLoe)
@@ -11,4 +13,24 @@ public class MemberSearchCondition {
     private Integer ageGoe;
     private Integer ageLoe;
 
+    private UsernameMatch usernameMatch = UsernameMatch.EXACT; // username 비교 방식
+    private boolean ignoreCase; // username 대소문자 무시 (소문자 컬럼으로 비교)
+
+    // 조건이 하나도 없으면 전체 회원이 대상이 된다.
+    public boolean hasFilter() {
+        return hasText(username) || hasText(teamName) || ageGoe != null || ageLoe != null;
+    }
+
+    // 캐시 키처럼 이후 변경되면 안 되는 곳에서 사용
+    public MemberSearchCondition copy() {
+        MemberSearchCondition copy = new MemberSearchCondition();
+        copy.setUsername(username);
+        copy.setTeamName(teamName);
+        copy.setAgeGoe(ageGoe);
+        copy.setAgeLoe(ageLoe);
+        copy.setUsernameMatch(usernameMatch);
+        copy.setIgnoreCase(ignoreCase);
+        return copy;
+    }
+
 }
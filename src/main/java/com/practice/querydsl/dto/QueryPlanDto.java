@@ -0,0 +1,14 @@
+package com.practice.querydsl.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class QueryPlanDto {
+
+    private String sql;
+    private List<String> plan;
+}
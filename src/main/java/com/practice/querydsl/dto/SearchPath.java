@@ -0,0 +1,7 @@
+package com.practice.querydsl.dto;
+
+// 검색 결과를 읽는 경로
+public enum SearchPath {
+    JPA,  // Querydsl + Hibernate
+    JDBC  // 번역된 SQL 을 JDBC 로 직접 실행 (MemberJdbcSearch)
+}
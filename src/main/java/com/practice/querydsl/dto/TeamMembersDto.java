@@ -0,0 +1,19 @@
+package com.practice.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class TeamMembersDto {
+
+    private Long teamId;
+    private String name;
+    private List<MemberDto> members = new ArrayList<>();
+
+    public TeamMembersDto(Long teamId, String name) {
+        this.teamId = teamId;
+        this.name = name;
+    }
+}
@@ -0,0 +1,7 @@
+package com.practice.querydsl.dto;
+
+public enum UsernameMatch {
+    EXACT,    // username = ?
+    PREFIX,   // username like '?%'   -> idx_member_username
+    CONTAINS  // username like '%?%'  -> UsernameTrigramIndex 로 후보를 줄인 뒤 확인
+}
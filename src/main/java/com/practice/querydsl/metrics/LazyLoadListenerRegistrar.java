@@ -0,0 +1,35 @@
+package com.practice.querydsl.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+// 어떤 연관관계가 지연 로딩됐는지 QueryBudget 경고 메시지에 남기기 위해 로딩 이벤트를 구독한다.
+@Component
+@RequiredArgsConstructor
+public class LazyLoadListenerRegistrar {
+
+    private final EntityManagerFactory emf;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.LOAD, (LoadEventListener) (event, loadType) -> {
+            if (loadType == LoadEventListener.IMMEDIATE_LOAD) { // 프록시 초기화
+                QueryBudget.lazyLoaded(event.getEntityClassName());
+            }
+        });
+        registry.appendListeners(EventType.INIT_COLLECTION, (InitializeCollectionEventListener) event ->
+                QueryBudget.lazyLoaded(event.getCollection().getRole()));
+    }
+}
@@ -0,0 +1,109 @@
+package com.practice.querydsl.metrics;
+
+import com.practice.querydsl.dto.MemberCursorPage;
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.repository.MemberSearchQueryCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemberJpaRepository 의 public 메서드와 /v1/members 핸들러의 지연시간, 반환 row 수를 기록한다.
+ * 숫자 하나를 반환하는 메서드(검색 총건수, 벌크 연산/스트리밍 처리 건수)는 row 분포를 흐리지 않도록 .count 로 따로 기록한다.
+ * 태그: method, shape(채워진 검색 조건), outcome
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class MemberSearchMetricsAspect {
+
+    private final MeterRegistry registry;
+
+    @Around("execution(public * com.practice.querydsl.repository.MemberJpaRepository.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return record("member.repository", joinPoint);
+    }
+
+    @Around("execution(public * com.practice.querydsl.controller.MemberController.searchMemberV1(..))")
+    public Object timeHandler(ProceedingJoinPoint joinPoint) throws Throwable {
+        return record("member.search.handler", joinPoint);
+    }
+
+    private Object record(String name, ProceedingJoinPoint joinPoint) throws Throwable {
+        String method = joinPoint.getSignature().getName();
+        String shape = shapeOf(joinPoint.getArgs());
+        String outcome = "success";
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            if (result instanceof Number) {
+                summary(name + ".count", method, shape).record(((Number) result).longValue());
+            } else {
+                long rows = rowsOf(result);
+                if (rows >= 0) {
+                    summary(name + ".rows", method, shape).record(rows);
+                }
+            }
+            return result;
+        } catch (Throwable e) {
+            outcome = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            Timer.builder(name)
+                    .tag("method", method)
+                    .tag("shape", shape)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private DistributionSummary summary(String name, String method, String shape) {
+        return DistributionSummary.builder(name)
+                .tag("method", method)
+                .tag("shape", shape)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private String shapeOf(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof MemberSearchCondition) {
+                return MemberSearchQueryCache.describe(MemberSearchQueryCache.shapeOf((MemberSearchCondition) arg));
+            }
+        }
+        return "n/a";
+    }
+
+    // 검색이 반환한 row 수. 알 수 없으면 -1
+    private long rowsOf(Object result) {
+        if (result instanceof ResponseEntity) {
+            return rowsOf(((ResponseEntity<?>) result).getBody());
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Page) {
+            return ((Page<?>) result).getNumberOfElements();
+        }
+        if (result instanceof MemberCursorPage) {
+            return ((MemberCursorPage) result).getContent().size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,184 @@
+package com.practice.querydsl.metrics;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 현재 스레드에서 실행되는 SQL 수를 세고, 허용 개수를 넘으면 경고(또는 예외)를 낸다.
+ * HTTP 요청마다 QueryBudgetFilter 가 열고, 테스트에서는 직접 열어서 N+1 을 잡는다.
+ * 요청 scope 는 응답이 커밋되기 전이면 예산을 넘는 SQL 에서 바로 실패시키고(에러 응답을 보낼 수 있도록), 커밋된 뒤에는 로그만 남긴다.
+ * 비동기 실행 스레드에서도 세려면 {@link #propagate(Runnable)} 또는 {@link #attach(Scope)} 로 scope 를 넘긴다.
+ *
+ * <pre>
+ * try (QueryBudget.Scope scope = QueryBudget.open("findAll", 2, true)) {
+ *     ...
+ * } // 2개를 넘으면 QueryBudgetExceededException
+ * </pre>
+ */
+@Slf4j
+public final class QueryBudget {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private QueryBudget() {
+    }
+
+    public static Scope open(String name, int limit, boolean failOnExceed) {
+        return open(name, limit, failOnExceed, null);
+    }
+
+    // responseCommitted 가 false 인 동안은 예산을 넘는 SQL 을 실행하지 않고 바로 QueryBudgetExceededException
+    public static Scope openRequest(String name, int limit, boolean failOnExceed, BooleanSupplier responseCommitted) {
+        return open(name, limit, failOnExceed, responseCommitted);
+    }
+
+    private static Scope open(String name, int limit, boolean failOnExceed, BooleanSupplier responseCommitted) {
+        Scope scope = new Scope(name, limit, failOnExceed, responseCommitted, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static Scope current() {
+        return CURRENT.get();
+    }
+
+    // 현재 스레드에서 실행되는 SQL 을 scope 에 센다. 반환값(원래 scope)을 detach 에 넘겨 되돌린다.
+    public static Scope attach(Scope scope) {
+        Scope previous = CURRENT.get();
+        CURRENT.set(scope);
+        return previous;
+    }
+
+    public static void detach(Scope previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    // 지금 스레드의 scope 를 task 를 실행하는 스레드로 넘긴다.
+    public static Runnable propagate(Runnable task) {
+        Scope scope = CURRENT.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            Scope previous = attach(scope);
+            try {
+                task.run();
+            } finally {
+                detach(previous);
+            }
+        };
+    }
+
+    static void statementExecuted(String sql) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.statementExecuted(sql);
+        }
+    }
+
+    // Member.team 프록시 초기화, Team.members 컬렉션 초기화 같은 지연 로딩
+    static void lazyLoaded(String association) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.lazyLoaded(association);
+        }
+    }
+
+    @Getter
+    public static class Scope implements AutoCloseable {
+
+        private final String name;
+        private final int limit;
+        private final boolean failOnExceed;
+        private final BooleanSupplier responseCommitted;
+        private final Scope parent;
+
+        private int statements;
+        private final Map<String, Integer> statementCounts = new HashMap<>();
+        private final Map<String, Integer> lazyLoads = new HashMap<>();
+        private boolean failed;
+
+        private Scope(String name, int limit, boolean failOnExceed, BooleanSupplier responseCommitted, Scope parent) {
+            this.name = name;
+            this.limit = limit;
+            this.failOnExceed = failOnExceed;
+            this.responseCommitted = responseCommitted;
+            this.parent = parent;
+        }
+
+        // 비동기 검색(/v4)은 여러 스레드가 같은 scope 에 센다.
+        public synchronized int getStatements() {
+            return statements;
+        }
+
+        public synchronized Map<String, Integer> getLazyLoads() {
+            return Collections.unmodifiableMap(new HashMap<>(lazyLoads));
+        }
+
+        public synchronized boolean isExceeded() {
+            return statements > limit;
+        }
+
+        private synchronized void statementExecuted(String sql) {
+            statements++;
+            statementCounts.merge(sql, 1, Integer::sum);
+            if (isExceeded() && canFail()) { // 한 번만. 이후의 에러 처리까지 막지 않는다.
+                failed = true;
+                throw new QueryBudgetExceededException(message());
+            }
+        }
+
+        private synchronized void lazyLoaded(String association) {
+            lazyLoads.merge(association, 1, Integer::sum);
+        }
+
+        // 요청 scope 는 응답이 커밋되기 전에만 실패시킨다. 커밋된 뒤에 던지면 클라이언트는 200 을 받고 로그에만 남는다.
+        private boolean canFail() {
+            return failOnExceed && responseCommitted != null && !failed && !responseCommitted.getAsBoolean();
+        }
+
+        @Override
+        public void close() {
+            CURRENT.set(parent);
+            report(true);
+        }
+
+        // mayFail 이 false 면(이미 다른 예외로 끝나는 중) 원래 예외를 가리지 않도록 로그만 남긴다.
+        void report(boolean mayFail) {
+            String message;
+            synchronized (this) {
+                if (!isExceeded() || failed) {
+                    return;
+                }
+                message = message();
+                if (mayFail && failOnExceed && (responseCommitted == null || !responseCommitted.getAsBoolean())) {
+                    failed = true;
+                    throw new QueryBudgetExceededException(message);
+                }
+            }
+            log.warn(message);
+        }
+
+        private String message() {
+            return String.format("query budget exceeded [%s]: %d statements > %d, lazy loads=%s, most repeated=%s",
+                    name, statements, limit, lazyLoads, mostRepeated());
+        }
+
+        private String mostRepeated() {
+            Map.Entry<String, Integer> top = null;
+            for (Map.Entry<String, Integer> entry : statementCounts.entrySet()) {
+                if (top == null || entry.getValue() > top.getValue()) {
+                    top = entry;
+                }
+            }
+            return top == null ? "none" : top.getValue() + "x " + top.getKey().replaceAll("\\s+", " ");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.practice.querydsl.metrics;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.util.concurrent.Callable;
+
+// MVC 비동기 실행 스레드(StreamingResponseBody, Callable)에서 실행되는 SQL 도 요청의 scope 로 센다.
+class QueryBudgetAsyncInterceptor implements CallableProcessingInterceptor {
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        QueryBudget.Scope scope = (QueryBudget.Scope) request.getAttribute(
+                QueryBudgetFilter.SCOPE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (scope != null) {
+            QueryBudget.attach(scope);
+        }
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        QueryBudget.detach(null); // 풀 스레드라 원래 scope 는 없다.
+    }
+}
@@ -0,0 +1,38 @@
+package com.practice.querydsl.metrics;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class QueryBudgetConfig implements WebMvcConfigurer {
+
+    // 다른 customizer(ReplicaWriteInspector)가 이 inspector 를 감쌀 수 있도록 먼저 적용한다.
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    HibernatePropertiesCustomizer queryCountInspectorCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountInspector());
+    }
+
+    @Bean
+    FilterRegistrationBean<QueryBudgetFilter> queryBudgetFilter(
+            @Value("${member.query-budget.per-request:20}") int perRequest,
+            @Value("${member.query-budget.fail-on-exceed:false}") boolean failOnExceed) {
+        FilterRegistrationBean<QueryBudgetFilter> registration =
+                new FilterRegistrationBean<>(new QueryBudgetFilter(perRequest, failOnExceed));
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new QueryBudgetAsyncInterceptor());
+    }
+}
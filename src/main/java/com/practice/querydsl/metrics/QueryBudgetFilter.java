@@ -0,0 +1,52 @@
+package com.practice.querydsl.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// 요청 하나에서 실행된 SQL 수가 예산을 넘으면 경고를 남긴다. (fail-on-exceed 면 응답이 커밋되기 전에 실패)
+// 비동기 요청은 scope 를 요청 속성으로 넘겨 마지막 dispatch 에서 판정한다. 비동기 실행 스레드는 QueryBudgetAsyncInterceptor 와
+// QueryBudget.propagate 가 같은 scope 로 센다.
+@RequiredArgsConstructor
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    static final String SCOPE_ATTRIBUTE = QueryBudgetFilter.class.getName() + ".SCOPE";
+
+    private final int perRequest;
+    private final boolean failOnExceed;
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryBudget.Scope scope = (QueryBudget.Scope) request.getAttribute(SCOPE_ATTRIBUTE);
+        QueryBudget.Scope previous;
+        if (scope == null) {
+            previous = QueryBudget.current();
+            scope = QueryBudget.openRequest(request.getMethod() + " " + request.getRequestURI(),
+                    perRequest, failOnExceed, response::isCommitted);
+            request.setAttribute(SCOPE_ATTRIBUTE, scope);
+        } else {
+            previous = QueryBudget.attach(scope);
+        }
+        boolean completed = false;
+        try {
+            chain.doFilter(request, response);
+            completed = true;
+        } finally {
+            QueryBudget.detach(previous);
+            if (!isAsyncStarted(request)) { // 비동기 처리 중이면 끝난 뒤의 dispatch 에서
+                scope.report(completed);
+            }
+        }
+    }
+}
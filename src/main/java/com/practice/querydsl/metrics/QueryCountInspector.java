@@ -0,0 +1,13 @@
+package com.practice.querydsl.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Hibernate 가 실행하는 모든 SQL 이 여기를 거친다. SQL 은 바꾸지 않고 세기만 한다.
+public class QueryCountInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        QueryBudget.statementExecuted(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,19 @@
+package com.practice.querydsl.model;
+
+import lombok.*;
+import javax.persistence.*;
+
+/**
+ * 인스턴스끼리 공유하는 데이터 버전. 쓰기 트랜잭션이 커밋 직전에 같은 트랜잭션 안에서 올린다. (MemberDataVersion)
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class DataVersion {
+
+    @Id
+    private String name;
+
+    private long version;
+}
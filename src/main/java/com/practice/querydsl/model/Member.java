@@ -2,18 +2,33 @@ package com.practice.querydsl.model;
 
 import lombok.*;
 import javax.persistence.*;
+import java.util.Locale;
+
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_username_lower", columnList = "username_lower"),
+        @Index(name = "idx_member_age", columnList = "age, member_id"), // 나이 범위 + 키셋 페이징(age, id)
+        @Index(name = "idx_member_team_age", columnList = "team_id, age")
+})
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
 public class Member {
 
-    @Id @GeneratedValue
+    // pooled 시퀀스: insert 마다 시퀀스를 조회하지 않고 JDBC 배치 insert 가 가능하다.
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq")
+    @SequenceGenerator(name = "member_seq", sequenceName = "member_seq", allocationSize = 100)
     @Column(name = "member_id")
     private Long id;
 
     private String username;
 
+    // 대소문자 무시 검색용. lower(username) 은 인덱스를 타지 못하므로 소문자 값을 따로 저장하고 인덱스를 건다.
+    @Setter(AccessLevel.NONE)
+    @Column(name = "username_lower")
+    private String usernameLower;
+
     private int age;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -29,13 +44,22 @@ public class Member {
     }
 
     public Member(String username, int age, Team team) {
-        this.username = username;
+        setUsername(username);
         this.age = age;
         if (team != null) {
             changeTeam(team);
         }
     }
 
+    public void setUsername(String username) {
+        this.username = username;
+        this.usernameLower = normalize(username);
+    }
+
+    public static String normalize(String username) {
+        return username == null ? null : username.toLowerCase(Locale.ROOT);
+    }
+
     public void changeTeam(Team team) {
         this.team = team;
         team.getMembers().add(this);
@@ -1,16 +1,22 @@
 package com.practice.querydsl.model;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.List;
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE) // 거의 바뀌지 않고 member 조회마다 다시 읽힌다.
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "name"})
 public class Team {
 
-    @Id @GeneratedValue
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "team_seq")
+    @SequenceGenerator(name = "team_seq", sequenceName = "team_seq", allocationSize = 100)
     @Column(name = "team_id")
     private Long id;
 
@@ -0,0 +1,26 @@
+package com.practice.querydsl.model;
+
+import lombok.*;
+import javax.persistence.*;
+
+/**
+ * 팀별 회원 통계 요약. 회원이 저장/수정/삭제될 때 TeamStatsMaintainer 가 증분으로 갱신한다.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class TeamStats {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+
+    private long memberCount;
+
+    private long ageSum; // 평균 = ageSum / memberCount
+
+    private Integer minAge;
+
+    private Integer maxAge;
+}
@@ -0,0 +1,141 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.metrics.QueryBudget;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+
+/**
+ * 페이징 검색의 content 쿼리와 count 쿼리를 전용 스레드풀에서 동시에 실행한다.
+ * 각 쿼리는 별도의 읽기 전용 트랜잭션에서 실행된다. 마감 시간이 지나면 결과는 TimeoutException 으로 끝나고,
+ * 아직 시작하지 않은 쿼리는 취소된다. 이미 실행 중인 쿼리는 인터럽트하지 않고(JDBC 호출 중 인터럽트는 커넥션을 망가뜨릴 수 있다)
+ * 남은 시간으로 건 DB 쿼리 타임아웃으로 멈춘다.
+ */
+@Component
+public class MemberAsyncSearch {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer;
+
+    public MemberAsyncSearch(MemberJpaRepository memberJpaRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${member.search.async.threads:8}") int threads,
+                             @Value("${member.search.async.queue-capacity:100}") int queueCapacity) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        // 큐가 차면 바로 거절한다. (요청 스레드가 대신 실행하면 동시 실행의 의미가 없다)
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("member-search-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("member-search-timeout-"));
+    }
+
+    public CompletableFuture<Page<MemberTeamDto>> searchPage(MemberSearchCondition condition, Pageable pageable,
+                                                             Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+
+        CompletableFuture<List<MemberTeamDto>> content = submit(deadline,
+                timeoutMillis -> memberJpaRepository.searchPageContent(condition, pageable, timeoutMillis));
+        CompletableFuture<Long> count =
+                submit(deadline, timeoutMillis -> memberJpaRepository.searchCount(condition, timeoutMillis));
+
+        CompletableFuture<Page<MemberTeamDto>> result = content.thenCompose(rows -> {
+            long known = knownTotal(rows, pageable);
+            if (known >= 0) { // content 만으로 전체 개수를 알 수 있으면 count 는 버린다.
+                count.cancel(false);
+                return CompletableFuture.completedFuture(new PageImpl<>(rows, pageable, known));
+            }
+            return count.thenApply(total -> new PageImpl<>(rows, pageable, total));
+        });
+
+        ScheduledFuture<?> timeoutTask = timer.schedule(
+                () -> result.completeExceptionally(new TimeoutException("member search exceeded " + timeout)),
+                timeout.toNanos(), TimeUnit.NANOSECONDS);
+        result.whenComplete((page, error) -> {
+            timeoutTask.cancel(false);
+            if (error != null) { // 타임아웃, 호출자 취소, 한쪽 실패 -> 남은 쿼리도 취소
+                content.cancel(false);
+                count.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    // query 에는 남은 시간(ms)이 넘어간다. 큐에서 기다리다 마감이 지났으면 실행하지 않는다.
+    private <T> CompletableFuture<T> submit(long deadline, IntFunction<T> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            Future<?> task = executor.submit(QueryBudget.propagate(() -> { // 요청의 쿼리 예산으로 센다.
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    future.completeExceptionally(
+                            new TimeoutException("member search deadline passed before query started"));
+                    return;
+                }
+                int timeoutMillis = (int) Math.min(remaining, Integer.MAX_VALUE);
+                try {
+                    future.complete(readOnlyTx.execute(status -> query.apply(timeoutMillis)));
+                } catch (QueryTimeoutException | javax.persistence.QueryTimeoutException e) {
+                    future.completeExceptionally(
+                            new TimeoutException("member search query timed out after " + timeoutMillis + " ms"));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }));
+            future.whenComplete((value, error) -> {
+                if (future.isCancelled()) {
+                    task.cancel(false); // 아직 큐에 있으면 실행되지 않는다. 실행 중이면 쿼리 타임아웃에 맡긴다.
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // PageableExecutionUtils 와 같은 규칙. 모르면 -1
+    private long knownTotal(List<MemberTeamDto> rows, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return rows.size();
+        }
+        if (pageable.getOffset() == 0 && pageable.getPageSize() > rows.size()) {
+            return rows.size();
+        }
+        if (!rows.isEmpty() && pageable.getPageSize() > rows.size()) {
+            return pageable.getOffset() + rows.size();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,52 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.model.Member;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * MemberJpaRepository 의 쓰기 경로(save, 팀 변경, 벌크 수정/삭제)가 발행하는 이벤트.
+ * 캐시처럼 member 데이터를 복제해 두는 쪽은 이 이벤트로 무효화한다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberChangedEvent {
+
+    public enum Type {
+        SAVED,
+        TEAM_CHANGED,
+        BULK_UPDATED,
+        BULK_DELETED
+    }
+
+    private final Type type;
+    private final Member member; // 벌크 연산이면 null
+    private final long affectedRows;
+    private final Set<Long> teamIds; // 벌크 연산 대상 회원들의 팀, 팀 변경이면 이전/이후 팀
+
+    public static MemberChangedEvent saved(Member member) {
+        return new MemberChangedEvent(Type.SAVED, member, 1, Collections.emptySet());
+    }
+
+    public static MemberChangedEvent teamChanged(Member member, Set<Long> teamIds) {
+        return new MemberChangedEvent(Type.TEAM_CHANGED, member, 1, teamIds);
+    }
+
+    public static MemberChangedEvent bulkUpdated(long affectedRows, Set<Long> teamIds) {
+        return new MemberChangedEvent(Type.BULK_UPDATED, null, affectedRows, teamIds);
+    }
+
+    public static MemberChangedEvent bulkDeleted(long affectedRows, Set<Long> teamIds) {
+        return new MemberChangedEvent(Type.BULK_DELETED, null, affectedRows, teamIds);
+    }
+
+    // 엔티티 이벤트 없이 DB 를 직접 바꾼 경우
+    public boolean isBulk() {
+        return type == Type.BULK_UPDATED || type == Type.BULK_DELETED;
+    }
+}
@@ -0,0 +1,561 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.mysema.commons.lang.CloseableIterator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.practice.querydsl.model.QMember.member;
+import static com.practice.querydsl.model.QTeam.team;
+import static com.practice.querydsl.repository.Transactions.inReadWriteTransaction;
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * username 조건이 없는 검색(teamName, ageGoe, ageLoe)을 DB 없이 처리하는 인메모리 컬럼 스냅샷.
+ * <p>
+ * 회원은 나이순(같으면 id 순)으로 정렬된 기본 배열(id, age, teamId, username)에 들어 있어서 나이 범위는 이진 탐색으로 찾는다.
+ * 팀 이름은 teamId -> name 사전과 그 역방향(name -> teamId 들)으로 따로 둔다. 커밋된 엔티티 변경은 작은 overlay(id -> 행)에 쌓였다가 주기적으로
+ * 기본 배열에 합쳐진다. 엔티티 이벤트가 없는 벌크 연산 뒤에는 DB 에서 다시 만들 때까지 검색하지 않는다(null 반환).
+ * 커밋된 데이터만 보이므로 쓰기 트랜잭션 안에서 호출되면 자기 변경을 볼 수 있도록 null 을 돌려준다.
+ */
+@Slf4j
+@Component
+public class MemberColumnarSnapshot implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final long NO_TEAM = Long.MIN_VALUE;
+
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+    private final boolean enabled;
+    private final int mergeThreshold;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Columns base = Columns.EMPTY;
+    private Map<Long, Row> overlay = new HashMap<>();
+    private Map<Long, String> teamNames = new HashMap<>();
+    private Map<String, long[]> teamIdsByName = new HashMap<>(); // 팀 이름은 유일하지 않을 수 있다. 배열은 바꾸지 않고 새로 만든다.
+    private Map<Long, Row> overlayDuringRebuild;        // 재구성 중에 커밋된 변경을 새 스냅샷에 다시 적용하기 위해
+    private Map<Long, String> teamNamesDuringRebuild;   // 값이 null 이면 삭제된 팀
+    private boolean ready;
+    private long bulkGeneration; // 벌크 연산마다 증가. 재구성 중에 바뀌면 그 결과는 믿을 수 없다.
+    private boolean stale = true;
+
+    private final Timer queryTimer;
+    private final Counter served;
+    private final Counter fallbacks;
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong merges = new AtomicLong();
+
+    public MemberColumnarSnapshot(EntityManagerFactory emf, JPAQueryFactory queryFactory,
+                                  PlatformTransactionManager transactionManager, MeterRegistry registry,
+                                  @Value("${member.search.columnar.enabled:false}") boolean enabled,
+                                  @Value("${member.search.columnar.merge-threshold:1024}") int mergeThreshold) {
+        this.emf = emf;
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.enabled = enabled;
+        this.mergeThreshold = mergeThreshold;
+
+        this.queryTimer = Timer.builder("member.columnar.query").publishPercentileHistogram().register(registry);
+        this.served = Counter.builder("member.columnar.searches").tag("result", "served").register(registry);
+        this.fallbacks = Counter.builder("member.columnar.searches").tag("result", "fallback").register(registry);
+        Gauge.builder("member.columnar.rows", this, snapshot -> snapshot.stats().getRows()).register(registry);
+        Gauge.builder("member.columnar.bytes", this, snapshot -> snapshot.stats().getEstimatedBytes())
+                .baseUnit("bytes").register(registry);
+    }
+
+    @PostConstruct
+    public void register() {
+        if (!enabled) {
+            return;
+        }
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, (PostInsertEventListener) this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, (PostUpdateEventListener) this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, (PostDeleteEventListener) this);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 스냅샷으로 처리할 수 있으면 결과를, 아니면(꺼짐, 준비 전, 벌크 연산 이후, username 조건, 쓰기 트랜잭션 안) null 을 돌려준다.
+     */
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        if (!enabled) {
+            return null;
+        }
+        if (hasText(condition.getUsername()) || inReadWriteTransaction()) {
+            fallbacks.increment();
+            return null;
+        }
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            if (!ready || stale) {
+                fallbacks.increment();
+                return null;
+            }
+            List<MemberTeamDto> result = scan(condition);
+            served.increment();
+            return result;
+        } finally {
+            lock.readLock().unlock();
+            queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    // 벌크 연산 이후에는 다시 만들고, 평소에는 overlay 가 커졌을 때만 기본 배열에 합친다.
+    @Scheduled(fixedDelayString = "${member.search.columnar.refresh-interval:PT5S}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        boolean rebuild;
+        boolean merge;
+        lock.readLock().lock();
+        try {
+            rebuild = !ready || stale;
+            merge = overlay.size() > mergeThreshold;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (rebuild) {
+            rebuild();
+        } else if (merge) {
+            merge();
+        }
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        long generation;
+        lock.writeLock().lock();
+        try {
+            overlayDuringRebuild = new HashMap<>();
+            teamNamesDuringRebuild = new HashMap<>();
+            generation = bulkGeneration;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Map<Long, String> loadedTeams = new HashMap<>();
+        ColumnsBuilder builder = new ColumnsBuilder(1024);
+        try {
+            readOnlyTx.executeWithoutResult(status -> {
+                for (Tuple tuple : queryFactory.select(team.id, team.name).from(team).fetch()) {
+                    loadedTeams.put(tuple.get(team.id), tuple.get(team.name));
+                }
+                try (CloseableIterator<Tuple> iterator = queryFactory
+                        .select(member.id, member.age, member.team.id, member.username)
+                        .from(member)
+                        .orderBy(member.id.asc()) // 같은 나이는 id 순이 되도록
+                        .setHint(org.hibernate.annotations.QueryHints.FETCH_SIZE, 1000)
+                        .setHint(org.hibernate.annotations.QueryHints.READ_ONLY, true)
+                        .iterate()) {
+                    while (iterator.hasNext()) {
+                        Tuple tuple = iterator.next();
+                        builder.add(tuple.get(member.id), tuple.get(member.age),
+                                tuple.get(member.team.id), tuple.get(member.username));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                overlayDuringRebuild = null;
+                teamNamesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        Columns rebuilt = builder.build();
+
+        lock.writeLock().lock();
+        try {
+            // 스캔 이후 커밋된 변경은 최종 상태로 다시 적용된다. (이미 반영됐어도 같은 값)
+            base = rebuilt;
+            overlay = overlayDuringRebuild;
+            teamNamesDuringRebuild.forEach((id, name) -> {
+                if (name == null) {
+                    loadedTeams.remove(id);
+                } else {
+                    loadedTeams.put(id, name);
+                }
+            });
+            teamNames = loadedTeams;
+            teamIdsByName = new HashMap<>();
+            loadedTeams.forEach((id, name) -> indexTeam(id, null, name));
+            overlayDuringRebuild = null;
+            teamNamesDuringRebuild = null;
+            ready = true;
+            stale = bulkGeneration != generation;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rebuilds.incrementAndGet();
+        log.info("member columnar snapshot rebuilt: {} members, {} teams, ~{} KB in {} ms", rebuilt.size,
+                loadedTeams.size(), rebuilt.estimatedBytes() / 1024, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // overlay 를 기본 배열에 합친다. 합치는 동안 들어오는 변경은 쓰기 락에서 기다린다.
+    void merge() {
+        lock.writeLock().lock();
+        try {
+            if (overlay.isEmpty()) {
+                return;
+            }
+            ColumnsBuilder builder = new ColumnsBuilder(base.size + overlay.size());
+            for (int i = 0; i < base.size; i++) {
+                if (!overlay.containsKey(base.ids[i])) {
+                    builder.add(base.ids[i], base.ages[i], teamIdOf(base.teamIds[i]), base.usernames[i]);
+                }
+            }
+            for (Row row : overlay.values()) {
+                if (!row.deleted) {
+                    builder.add(row.id, row.age, row.teamId, row.username);
+                }
+            }
+            base = builder.build();
+            overlay = new HashMap<>();
+            merges.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            long bytes = base.estimatedBytes() + overlay.size() * 96L + teamNames.size() * 96L;
+            return new Stats(enabled, ready && !stale, base.size, overlay.size(), teamNames.size(), bytes,
+                    (long) served.count(), (long) fallbacks.count(),
+                    (long) queryTimer.mean(TimeUnit.MICROSECONDS), rebuilds.get(), merges.get());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 벌크 연산은 엔티티 이벤트가 없다. 커밋된 뒤 다시 만들 때까지 DB 로 검색하게 한다.
+    // 데이터 버전이 올라가기 전에 처리해야 새 버전으로 이전 스냅샷을 읽는 일이 없다.
+    @Order(MemberDataVersion.BEFORE_BUMP)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void afterMemberChangeCommitted(MemberChangedEvent event) {
+        if (!enabled || !event.isBulk()) {
+            return; // 엔티티 변경은 post-commit 이벤트로 반영된다.
+        }
+        lock.writeLock().lock();
+        try {
+            bulkGeneration++;
+            stale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        apply(event.getEntity(), (Long) event.getId(), false);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        apply(event.getEntity(), (Long) event.getId(), false);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        apply(event.getEntity(), (Long) event.getId(), true);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return Member.class.equals(type) || Team.class.equals(type);
+    }
+
+    private void apply(Object entity, Long id, boolean deleted) {
+        if (entity instanceof Member) {
+            Member changed = (Member) entity;
+            Long teamId = changed.getTeam() != null ? changed.getTeam().getId() : null;
+            Row row = new Row(id, changed.getAge(), teamId, changed.getUsername(), deleted);
+            lock.writeLock().lock();
+            try {
+                overlay.put(id, row);
+                if (overlayDuringRebuild != null) {
+                    overlayDuringRebuild.put(id, row);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } else if (entity instanceof Team) {
+            String name = deleted ? null : ((Team) entity).getName();
+            lock.writeLock().lock();
+            try {
+                String previous = name == null ? teamNames.remove(id) : teamNames.put(id, name);
+                indexTeam(id, previous, name);
+                if (teamNamesDuringRebuild != null) {
+                    teamNamesDuringRebuild.put(id, name);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // 읽기 락 안에서 호출
+    private List<MemberTeamDto> scan(MemberSearchCondition condition) {
+        long[] wantedTeams = null;
+        if (hasText(condition.getTeamName())) {
+            wantedTeams = teamIdsNamed(condition.getTeamName());
+            if (wantedTeams.length == 0) {
+                return new ArrayList<>();
+            }
+        }
+        int minAge = condition.getAgeGoe() != null ? condition.getAgeGoe() : Integer.MIN_VALUE;
+        int maxAge = condition.getAgeLoe() != null ? condition.getAgeLoe() : Integer.MAX_VALUE;
+        List<MemberTeamDto> result = new ArrayList<>();
+        if (minAge > maxAge) {
+            return result;
+        }
+
+        Columns columns = base;
+        boolean hasOverlay = !overlay.isEmpty();
+        int from = lowerBound(columns.ages, columns.size, minAge);
+        int to = maxAge == Integer.MAX_VALUE ? columns.size : lowerBound(columns.ages, columns.size, maxAge + 1);
+        for (int i = from; i < to; i++) {
+            long teamId = columns.teamIds[i];
+            if (wantedTeams != null && !contains(wantedTeams, teamId)) {
+                continue;
+            }
+            if (hasOverlay && overlay.containsKey(columns.ids[i])) {
+                continue; // overlay 의 최신 값으로 대신한다.
+            }
+            result.add(dto(columns.ids[i], columns.usernames[i], columns.ages[i], teamIdOf(teamId)));
+        }
+        for (Row row : overlay.values()) {
+            if (row.deleted || row.age < minAge || row.age > maxAge) {
+                continue;
+            }
+            if (wantedTeams != null && (row.teamId == null || !contains(wantedTeams, row.teamId))) {
+                continue;
+            }
+            result.add(dto(row.id, row.username, row.age, row.teamId));
+        }
+        return result;
+    }
+
+    private MemberTeamDto dto(long id, String username, int age, Long teamId) {
+        return new MemberTeamDto(id, username, age, teamId, teamId != null ? teamNames.get(teamId) : null);
+    }
+
+    private long[] teamIdsNamed(String name) {
+        long[] ids = teamIdsByName.get(name);
+        return ids != null ? ids : new long[0];
+    }
+
+    // 쓰기 락 안에서 호출. teamNames 가 previous -> name 으로 바뀐 것을 역방향 사전에 반영한다. (null 은 없음)
+    private void indexTeam(long id, String previous, String name) {
+        if (previous != null) {
+            long[] ids = teamIdsByName.get(previous);
+            if (ids != null) {
+                long[] remaining = Arrays.stream(ids).filter(candidate -> candidate != id).toArray();
+                if (remaining.length == 0) {
+                    teamIdsByName.remove(previous);
+                } else {
+                    teamIdsByName.put(previous, remaining);
+                }
+            }
+        }
+        if (name != null) {
+            long[] ids = teamIdsByName.getOrDefault(name, new long[0]);
+            if (!contains(ids, id)) {
+                ids = Arrays.copyOf(ids, ids.length + 1);
+                ids[ids.length - 1] = id;
+                teamIdsByName.put(name, ids);
+            }
+        }
+    }
+
+    private static boolean contains(long[] values, long value) {
+        for (long candidate : values) {
+            if (candidate == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ages[i] >= age 인 첫 위치
+    private static int lowerBound(int[] ages, int size, int age) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ages[mid] < age) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Long teamIdOf(long teamId) {
+        return teamId == NO_TEAM ? null : teamId;
+    }
+
+    @RequiredArgsConstructor
+    private static class Row {
+        private final long id;
+        private final int age;
+        private final Long teamId;
+        private final String username;
+        private final boolean deleted;
+    }
+
+    // 한 번 만들면 바뀌지 않는다. 나이, id 순으로 정렬되어 있다.
+    @RequiredArgsConstructor
+    private static class Columns {
+        static final Columns EMPTY = new Columns(new long[0], new int[0], new long[0], new String[0], 0);
+
+        private final long[] ids;
+        private final int[] ages;
+        private final long[] teamIds;
+        private final String[] usernames;
+        private final int size;
+
+        // 배열 + username 문자열(헤더 40바이트 + 글자당 1~2바이트, 넉넉히 2바이트로 계산)
+        long estimatedBytes() {
+            long bytes = 16L * 4 + (8L + 4 + 8 + 4) * ids.length;
+            for (int i = 0; i < size; i++) {
+                if (usernames[i] != null) {
+                    bytes += 40 + 2L * usernames[i].length();
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private static class ColumnsBuilder {
+        private long[] ids;
+        private int[] ages;
+        private long[] teamIds;
+        private String[] usernames;
+        private int size;
+
+        ColumnsBuilder(int capacity) {
+            capacity = Math.max(capacity, 16);
+            ids = new long[capacity];
+            ages = new int[capacity];
+            teamIds = new long[capacity];
+            usernames = new String[capacity];
+        }
+
+        void add(long id, int age, Long teamId, String username) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                teamIds = Arrays.copyOf(teamIds, capacity);
+                usernames = Arrays.copyOf(usernames, capacity);
+            }
+            ids[size] = id;
+            ages[size] = age;
+            teamIds[size] = teamId != null ? teamId : NO_TEAM;
+            usernames[size] = username;
+            size++;
+        }
+
+        // (age, 추가 순서)를 long 하나로 묶어 primitive 정렬한다. 추가 순서가 id 순이 아니면 같은 나이 안에서는 추가 순서를 따른다.
+        Columns build() {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) ages[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            long[] sortedIds = new long[size];
+            int[] sortedAges = new int[size];
+            long[] sortedTeamIds = new long[size];
+            String[] sortedUsernames = new String[size];
+            for (int i = 0; i < size; i++) {
+                int from = (int) keys[i];
+                sortedIds[i] = ids[from];
+                sortedAges[i] = ages[from];
+                sortedTeamIds[i] = teamIds[from];
+                sortedUsernames[i] = usernames[from];
+            }
+            return new Columns(sortedIds, sortedAges, sortedTeamIds, sortedUsernames, size);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Stats {
+        private final boolean enabled;
+        private final boolean serving;
+        private final int rows;
+        private final int overlayRows;
+        private final int teams;
+        private final long estimatedBytes;
+        private final long servedSearches;
+        private final long fallbackSearches;
+        private final long meanQueryMicros;
+        private final long rebuilds;
+        private final long merges;
+    }
+}
@@ -0,0 +1,187 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * member 검색 결과에 영향을 주는 쓰기(회원/팀 엔티티 변경, 벌크 연산)가 커밋될 때마다 올라가는 데이터 버전.
+ * 버전과 검색 조건으로 ETag 를 만들면, 버전이 그대로인 동안은 쿼리 없이 304 로 답할 수 있다.
+ * <p>
+ * 버전은 DB 의 data_version 행에 두고, 쓰기 트랜잭션이 커밋 flush 뒤에 같은 트랜잭션 안에서 올린다.
+ * 그래서 다른 인스턴스의 쓰기도 커밋과 동시에 보이고, 롤백되면 같이 취소된다. (행 잠금은 커밋하는 동안만 잡는다)
+ * 버전을 읽은 뒤에 쿼리를 실행해야 한다.
+ * <p>
+ * 스냅샷 같은 인스턴스 로컬 상태는 커밋 뒤에 갱신되므로, ETag 에는 이 인스턴스에서 after-commit 처리가 끝난 뒤
+ * 올리는 로컬 버전과 인스턴스 id 도 넣는다. 다른 인스턴스가 만든 ETag 는 맞지 않아 200 으로 답한다.
+ */
+@Component
+public class MemberDataVersion implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    // 커밋 이후 처리 중 로컬 버전보다 먼저 끝나야 하는 것들의 순서
+    public static final int BEFORE_BUMP = Ordered.LOWEST_PRECEDENCE - 1;
+
+    private static final String NAME = "member";
+    private static final String BUMP = "update data_version set version = version + 1 where name = '" + NAME + "'";
+
+    private final EntityManagerFactory emf;
+    private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong localVersion = new AtomicLong();
+
+    // 이미 버전을 올리도록 등록한 세션(트랜잭션)
+    private final Set<SharedSessionContractImplementor> pending = ConcurrentHashMap.newKeySet();
+
+    public MemberDataVersion(EntityManagerFactory emf, EntityManager em, JdbcTemplate jdbcTemplate) {
+        this.emf = emf;
+        this.em = em;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, (PostInsertEventListener) this);
+        registry.appendListeners(EventType.POST_UPDATE, (PostUpdateEventListener) this);
+        registry.appendListeners(EventType.POST_DELETE, (PostDeleteEventListener) this);
+        try { // 여러 인스턴스가 같이 떠도 행은 하나만 생긴다.
+            jdbcTemplate.update("insert into data_version (name, version) select ?, 0 from dual"
+                    + " where not exists (select 1 from data_version where name = ?)", NAME, NAME);
+        } catch (DuplicateKeyException ignored) {
+        }
+    }
+
+    public long current() {
+        return jdbcTemplate.queryForObject("select version from data_version where name = ?", Long.class, NAME);
+    }
+
+    public String etag(MemberSearchCondition condition) {
+        String key = condition.getUsername() + '|' + condition.getUsernameMatch() + '|' + condition.isIgnoreCase()
+                + '|' + condition.getTeamName() + '|' + condition.getAgeGoe() + '|' + condition.getAgeLoe();
+        String digest = DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+        return current() + "-" + instanceId + "-" + localVersion.get() + "-" + digest;
+    }
+
+    // 벌크 연산처럼 엔티티 이벤트가 없는 쓰기까지 포함해서
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            bump(em.unwrap(EventSource.class));
+        } else {
+            bumpNow();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (affectsSearch(event.getEntity())) {
+            bump(event.getSession());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (affectsSearch(event.getEntity())) {
+            bump(event.getSession());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (affectsSearch(event.getEntity())) {
+            bump(event.getSession());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private static boolean affectsSearch(Object entity) {
+        return entity instanceof Member || entity instanceof Team;
+    }
+
+    // 트랜잭션마다 한 번, 커밋 flush 뒤에 같은 트랜잭션에서 공유 버전을 올린다. (롤백되면 실행되지 않는다)
+    private void bump(EventSource session) {
+        if (!session.isTransactionInProgress()) {
+            bumpNow();
+            return;
+        }
+        if (pending.add(session)) {
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) s ->
+                    s.createNativeQuery(BUMP).addSynchronizedQuerySpace("data_version").executeUpdate());
+            session.getActionQueue().registerProcess(
+                    (AfterTransactionCompletionProcess) (success, s) -> pending.remove(s));
+        }
+        bumpLocalAfterCommit();
+    }
+
+    private void bumpNow() {
+        jdbcTemplate.update(BUMP);
+        localVersion.incrementAndGet();
+    }
+
+    // 로컬 버전은 커밋된 경우에만 다른 after-commit 처리가 끝난 뒤 마지막 순서로 올린다.
+    private void bumpLocalAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            localVersion.incrementAndGet();
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Bump) {
+                return;
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new Bump());
+    }
+
+    private class Bump implements TransactionSynchronization {
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+                localVersion.incrementAndGet();
+            }
+        }
+    }
+}
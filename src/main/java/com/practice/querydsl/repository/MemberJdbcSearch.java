@@ -0,0 +1,93 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.practice.querydsl.repository.Transactions.inReadWriteTransaction;
+
+/**
+ * search() 와 같은 결과를 Hibernate 를 거치지 않고 JDBC 로 읽는다.
+ * SQL 은 shape 별 JPQL 템플릿을 Hibernate 가 번역한 것을 한 번만 만들어 재사용하고,
+ * 행은 select 순서로 정해진 컬럼 위치에서 바로 MemberTeamDto 로 옮긴다. (엔티티, 영속성 컨텍스트, 결과 변환기 없음)
+ * username 부분 일치는 trigram 후보 없이 like 로만 비교한다.
+ */
+@Repository
+public class MemberJdbcSearch {
+
+    // MemberSearchQueryCache 템플릿의 select 순서
+    private static final int MEMBER_ID = 1;
+    private static final int USERNAME = 2;
+    private static final int AGE = 3;
+    private static final int TEAM_ID = 4;
+    private static final int TEAM_NAME = 5;
+
+    private static final RowMapper<MemberTeamDto> ROW_MAPPER = (rs, rowNum) -> {
+        Long teamId = rs.getLong(TEAM_ID);
+        if (rs.wasNull()) { // 팀 없는 회원 (left join)
+            teamId = null;
+        }
+        return new MemberTeamDto(rs.getLong(MEMBER_ID), rs.getString(USERNAME), rs.getInt(AGE),
+                teamId, rs.getString(TEAM_NAME));
+    };
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final JdbcTemplate jdbcTemplate;
+    private final MemberSearchQueryCache searchQueryCache;
+    private final ConcurrentMap<Integer, String> sqlByShape = new ConcurrentHashMap<>();
+
+    public MemberJdbcSearch(EntityManager em, EntityManagerFactory emf, JdbcTemplate jdbcTemplate,
+                            MemberSearchQueryCache searchQueryCache) {
+        this.em = em;
+        this.emf = emf;
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchQueryCache = searchQueryCache;
+    }
+
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        if (inReadWriteTransaction()) {
+            em.flush(); // JDBC 는 Hibernate 의 자동 flush 대상이 아니다.
+        }
+        int shape = MemberSearchQueryCache.shapeOf(condition);
+        return jdbcTemplate.query(sql(shape), ROW_MAPPER, arguments(condition, shape));
+    }
+
+    public String sql(int shape) {
+        return sqlByShape.computeIfAbsent(shape, key -> translate(searchQueryCache.jpql(key)));
+    }
+
+    // 템플릿의 파라미터 순서(username, teamName, ageGoe, ageLoe)가 SQL 에서도 그대로 유지된다.
+    public static Object[] arguments(MemberSearchCondition condition, int shape) {
+        List<Object> args = new ArrayList<>(4);
+        if ((shape & MemberSearchQueryCache.USERNAME) != 0) args.add(MemberSearchQueryCache.usernameParameter(condition));
+        if ((shape & MemberSearchQueryCache.TEAM_NAME) != 0) args.add(condition.getTeamName());
+        if ((shape & MemberSearchQueryCache.AGE_GOE) != 0) args.add(condition.getAgeGoe());
+        if ((shape & MemberSearchQueryCache.AGE_LOE) != 0) args.add(condition.getAgeLoe());
+        return args.toArray();
+    }
+
+    // 템플릿을 고쳐 쓴 JPQL(MemberQueryPlanInspector 의 후보 id 조건)도 같은 방식으로 번역한다.
+    String translate(String jpql) {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        QueryTranslator translator = new ASTQueryTranslatorFactory()
+                .createQueryTranslator(jpql, jpql, Collections.emptyMap(), sessionFactory, null);
+        translator.compile(Collections.emptyMap(), false);
+        return translator.getSQLString();
+    }
+}
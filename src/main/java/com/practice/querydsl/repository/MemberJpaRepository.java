@@ -1,48 +1,179 @@
 package com.practice.querydsl.repository;
 
+import com.practice.querydsl.dto.MemberCursor;
+import com.practice.querydsl.dto.MemberCursorPage;
 import com.practice.querydsl.dto.MemberSearchCondition;
 import com.practice.querydsl.dto.MemberTeamDto;
 import com.practice.querydsl.dto.QMemberTeamDto;
+import com.practice.querydsl.dto.UsernameMatch;
 import com.practice.querydsl.model.Member;
 import com.practice.querydsl.model.QMember;
+import com.practice.querydsl.model.Team;
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static com.practice.querydsl.model.QMember.*;
 import static com.practice.querydsl.model.QTeam.team;
+import static com.practice.querydsl.repository.Transactions.inReadWriteTransaction;
 import static org.springframework.util.StringUtils.*;
 
 @Repository
 public class MemberJpaRepository {
 
+    private static final String FIND_ALL_WITH_TEAM = "select m from Member m left join fetch m.team";
+
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchQueryCache searchQueryCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UsernameTrigramIndex usernameTrigramIndex;
 
-    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory) {
+    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory,
+                               MemberSearchQueryCache searchQueryCache,
+                               ApplicationEventPublisher eventPublisher,
+                               UsernameTrigramIndex usernameTrigramIndex) {
         this.em = em;
         this.queryFactory = queryFactory;
+        this.searchQueryCache = searchQueryCache;
+        this.eventPublisher = eventPublisher;
+        this.usernameTrigramIndex = usernameTrigramIndex;
     }
 
     public void save(Member member){
         em.persist(member);
+        eventPublisher.publishEvent(MemberChangedEvent.saved(member));
+    }
+
+    // 팀 변경은 dirty checking 으로 반영된다. 이벤트에는 이전/이후 팀을 담는다.
+    public void changeTeam(Member member, Team team){
+        Set<Long> teamIds = new HashSet<>();
+        if (member.getTeam() != null) {
+            teamIds.add(member.getTeam().getId());
+        }
+        member.changeTeam(team);
+        teamIds.add(team.getId());
+        eventPublisher.publishEvent(MemberChangedEvent.teamChanged(member, teamIds));
+    }
+
+    // 벌크 연산은 영속 컨텍스트를 거치지 않으므로 먼저 flush 하고, 실행 후 clear 해서 DB 와 맞춘다.
+    public long bulkAddAge(MemberSearchCondition condition, int amount){
+        em.flush();
+        Set<Long> teamIds = affectedTeamIds(condition);
+        long count = queryFactory
+                .update(member)
+                .set(member.age, member.age.add(amount))
+                .where(bulkWhere(condition))
+                .execute();
+        em.clear();
+        eventPublisher.publishEvent(MemberChangedEvent.bulkUpdated(count, teamIds));
+        return count;
+    }
+
+    public long bulkDelete(MemberSearchCondition condition){
+        em.flush();
+        Set<Long> teamIds = affectedTeamIds(condition);
+        long count = queryFactory
+                .delete(member)
+                .where(bulkWhere(condition))
+                .execute();
+        em.clear();
+        eventPublisher.publishEvent(MemberChangedEvent.bulkDeleted(count, teamIds));
+        return count;
     }
 
+    // 청크 단위 벌크 연산(MemberBulkService)용: 조건에 맞는 회원을 id 순으로 afterId 다음부터 chunkSize 개
+    public List<Tuple> findBulkChunk(MemberSearchCondition condition, Long afterId, int chunkSize){
+        flushForUsernameContains(condition);
+        return queryFactory
+                .select(member.id, member.team.id)
+                .from(member)
+                .where(bulkWhere(condition))
+                .where(afterId != null ? member.id.gt(afterId) : null)
+                .orderBy(member.id.asc())
+                .limit(chunkSize)
+                .fetch();
+    }
+
+    public long addAgeByIds(Collection<Long> ids, int amount, Set<Long> teamIds){
+        long count = queryFactory
+                .update(member)
+                .set(member.age, member.age.add(amount))
+                .where(member.id.in(ids))
+                .execute();
+        eventPublisher.publishEvent(MemberChangedEvent.bulkUpdated(count, teamIds));
+        return count;
+    }
+
+    public long deleteByIds(Collection<Long> ids, Set<Long> teamIds){
+        long count = queryFactory
+                .delete(member)
+                .where(member.id.in(ids))
+                .execute();
+        eventPublisher.publishEvent(MemberChangedEvent.bulkDeleted(count, teamIds));
+        return count;
+    }
+
+    // em.clear() 대신 벌크 연산으로 DB 와 달라진 회원만 현재 영속 컨텍스트에서 분리한다.
+    public int evict(Collection<Long> ids){
+        EntityManager current = EntityManagerFactoryUtils.getTransactionalEntityManager(em.getEntityManagerFactory());
+        if (current == null) { // 호출한 쪽에 열린 영속 컨텍스트가 없다.
+            return 0;
+        }
+        SessionImplementor session = current.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        int evicted = 0;
+        for (Long id : ids) {
+            Object managed = session.getPersistenceContextInternal().getEntity(session.generateEntityKey(id, persister));
+            if (managed != null) {
+                current.detach(managed);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    @Transactional(readOnly = true)
     public Optional<Member> findById(Long id){
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll(){
         return em.createQuery("select m from Member m",Member.class)
                 .getResultList();
     }
+    @Transactional(readOnly = true)
     public List<Member> findALl_QueryDsl(){
         return queryFactory
                 .selectFrom(member) // QMember.member -> static import
@@ -50,12 +181,14 @@ public class MemberJpaRepository {
     }
 
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername(String username){
         return em.createQuery("select m from Member m where m.username = :username", Member.class)
                 .setParameter("username",username)
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername_QueryDsl(String username){
         return queryFactory
                 .selectFrom(member)
@@ -63,12 +196,69 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    // *_ReadOnly: 쓰기 트랜잭션 안에서 호출돼도 스냅샷(dirty checking)을 만들지 않고, 쿼리 전 자동 flush 도 하지 않는다.
+    // 따라서 아직 flush 되지 않은 변경은 결과에 보이지 않고, 반환된 엔티티를 수정해도 DB 에 반영되지 않는다.
+    @Transactional(readOnly = true)
+    public List<Member> findAll_ReadOnly(){
+        return em.createQuery("select m from Member m", Member.class)
+                .setHint(org.hibernate.annotations.QueryHints.READ_ONLY, true)
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<Member> findALl_QueryDsl_ReadOnly(){
+        return queryFactory
+                .selectFrom(member)
+                .setHint(org.hibernate.annotations.QueryHints.READ_ONLY, true)
+                .setFlushMode(FlushModeType.COMMIT)
+                .fetch();
+    }
+
+    @Transactional(readOnly = true)
+    public List<Member> findByUsername_QueryDsl_ReadOnly(String username){
+        return queryFactory
+                .selectFrom(member)
+                .where(member.username.eq(username))
+                .setHint(org.hibernate.annotations.QueryHints.READ_ONLY, true)
+                .setFlushMode(FlushModeType.COMMIT)
+                .fetch();
+    }
+
+    // 팀까지 fetch join 으로 한 번에 읽는다. (아래 *_ReadOnly, *_Stateless 와 같은 쿼리)
+    @Transactional(readOnly = true)
+    public List<Member> findAllWithTeam(){
+        return em.createQuery(FIND_ALL_WITH_TEAM, Member.class)
+                .getResultList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<Member> findAllWithTeam_ReadOnly(){
+        return em.createQuery(FIND_ALL_WITH_TEAM, Member.class)
+                .setHint(org.hibernate.annotations.QueryHints.READ_ONLY, true)
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
+    }
+
+    // 영속 컨텍스트 없이(StatelessSession) 팀까지 한 번에 읽는다. 지연 로딩이 불가능하므로 fetch join 으로 가져온다.
+    public List<Member> findAllWithTeam_Stateless(){
+        SessionFactory sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactory.class);
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return session.createQuery(FIND_ALL_WITH_TEAM, Member.class)
+                    .setReadOnly(true)
+                    .getResultList();
+        }
+    }
+
+    // search 와 같은 쿼리를 매번 Querydsl 로 만든다. (템플릿과 결과 비교, 벤치마크 기준)
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByBuilder(MemberSearchCondition condition){
+        flushForUsernameContains(condition);
 
         BooleanBuilder builder = new BooleanBuilder();
 
         if (hasText(condition.getUsername())) {
-            builder.and(member.username.eq(condition.getUsername()));
+            builder.and(usernameMatches(condition));
         }
         if (hasText(condition.getTeamName())){
             builder.and(team.name.eq(condition.getTeamName()));
@@ -77,7 +267,7 @@ public class MemberJpaRepository {
             builder.and(member.age.goe(condition.getAgeGoe()));
         }
         if (condition.getAgeLoe() != null){
-            builder.and(member.age.goe(condition.getAgeLoe()));
+            builder.and(member.age.loe(condition.getAgeLoe()));
         }
 
         return queryFactory
@@ -93,8 +283,55 @@ public class MemberJpaRepository {
                 .fetch();
 
     }
+
+    // 조건 shape 별로 캐시된 JPQL 에 파라미터만 바인딩한다. Querydsl 로 쿼리를 다시 만들고 직렬화하지 않고,
+    // 같은 JPQL 문자열이라 Hibernate 쿼리 플랜 캐시에서 파싱도 한 번뿐이다. (Querydsl 로 만드는 같은 쿼리는 searchByBuilder)
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition condition){
-        return queryFactory
+        flushForUsernameContains(condition);
+        int shape = MemberSearchQueryCache.shapeOf(condition);
+        List<Long> candidates = null;
+        if ((shape & MemberSearchQueryCache.USERNAME_CONTAINS) != 0) {
+            candidates = usernameCandidates(MemberSearchQueryCache.usernameValue(condition));
+            if (candidates != null && candidates.isEmpty()) {
+                return new ArrayList<>();
+            }
+            if (candidates != null) {
+                shape |= MemberSearchQueryCache.CANDIDATE_IDS;
+            }
+        }
+        TypedQuery<MemberTeamDto> query = em.createQuery(searchQueryCache.jpql(shape), MemberTeamDto.class);
+        if ((shape & MemberSearchQueryCache.USERNAME) != 0) {
+            query.setParameter("username", MemberSearchQueryCache.usernameParameter(condition));
+        }
+        if ((shape & MemberSearchQueryCache.CANDIDATE_IDS) != 0) {
+            query.setParameter("ids", candidates);
+        }
+        if ((shape & MemberSearchQueryCache.TEAM_NAME) != 0) {
+            query.setParameter("teamName", condition.getTeamName());
+        }
+        if ((shape & MemberSearchQueryCache.AGE_GOE) != 0) {
+            query.setParameter("ageGoe", condition.getAgeGoe());
+        }
+        if ((shape & MemberSearchQueryCache.AGE_LOE) != 0) {
+            query.setParameter("ageLoe", condition.getAgeLoe());
+        }
+        return query.getResultList();
+    }
+
+    // count 쿼리는 필요할 때만 실행한다. (첫 페이지가 size 보다 작거나, 마지막 페이지인 경우 생략)
+    @Transactional(readOnly = true)
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable){
+        List<MemberTeamDto> content = searchPageContent(condition, pageable, 0);
+        JPAQuery<Long> countQuery = countQuery(condition);
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
+
+    // content 와 count 를 따로 실행하는 경우(MemberAsyncSearch)를 위해 분리. timeoutMillis 가 0 이면 제한 없음
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> searchPageContent(MemberSearchCondition condition, Pageable pageable, int timeoutMillis){
+        flushForUsernameContains(condition);
+        JPAQuery<MemberTeamDto> query = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -102,19 +339,155 @@ public class MemberJpaRepository {
                         team.id.as("teamId"),
                         team.name.as("teamName")))
                 .from(member)
-                .leftJoin(member.team,team)
+                .leftJoin(member.team, team)
                 .where(
-                        usernameEq(condition.getUsername()),
+                        usernameMatches(condition),
                         teamNameEq(condition.getTeamName()),
                         ageGoe(condition.getAgeGoe()),
                         ageLoe(condition.getAgeLoe())
+                )
+                .orderBy(member.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize());
+        return withTimeout(query, timeoutMillis).fetch();
+    }
+
+    @Transactional(readOnly = true)
+    public long searchCount(MemberSearchCondition condition, int timeoutMillis){
+        flushForUsernameContains(condition);
+        Long count = withTimeout(countQuery(condition), timeoutMillis).fetchOne();
+        return count != null ? count : 0L;
+    }
+
+    // DB 쪽에서 쿼리를 취소시켜서 타임아웃 이후에 커넥션을 붙잡고 있지 않게 한다.
+    private <T> JPAQuery<T> withTimeout(JPAQuery<T> query, int timeoutMillis){
+        return timeoutMillis > 0 ? query.setHint("javax.persistence.query.timeout", timeoutMillis) : query;
+    }
+
+    // 팀 이름 조건이 없으면 team 조인 자체가 필요 없다. (left join 이라 row 수도 변하지 않는다)
+    private JPAQuery<Long> countQuery(MemberSearchCondition condition){
+        JPAQuery<Long> query = queryFactory
+                .select(member.count())
+                .from(member);
+        if (hasText(condition.getTeamName())) {
+            query.leftJoin(member.team, team);
+        }
+        return query.where(
+                usernameMatches(condition),
+                teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        );
+    }
 
+    // 결과를 List 로 모으지 않고 스크롤 커서로 한 건씩 넘긴다. DTO 프로젝션이라 영속 컨텍스트에 엔티티가 쌓이지 않는다.
+    @Transactional(readOnly = true)
+    public long searchEach(MemberSearchCondition condition, int fetchSize, Consumer<MemberTeamDto> consumer){
+        flushForUsernameContains(condition);
+        long rows = 0;
+        try (CloseableIterator<MemberTeamDto> iterator = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameMatches(condition),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
                 )
-                .fetch();
+                .setHint(org.hibernate.annotations.QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(org.hibernate.annotations.QueryHints.READ_ONLY, true)
+                .iterate()) {
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    // 팀 통계처럼 팀 단위로 유지되는 데이터를 갱신할 수 있도록 벌크 연산 전에 대상 팀을 구해둔다.
+    private Set<Long> affectedTeamIds(MemberSearchCondition condition){
+        Set<Long> teamIds = new HashSet<>(queryFactory
+                .select(member.team.id)
+                .distinct()
+                .from(member)
+                .where(bulkWhere(condition))
+                .fetch());
+        teamIds.remove(null);
+        return teamIds;
+    }
+
+    // 벌크 update/delete 에는 join 을 쓸 수 없어서 팀 이름 조건은 서브쿼리로 바꾼다.
+    private Predicate[] bulkWhere(MemberSearchCondition condition){
+        return new Predicate[]{
+                usernameMatches(condition),
+                hasText(condition.getTeamName())
+                        ? member.team.id.in(JPAExpressions
+                                .select(team.id)
+                                .from(team)
+                                .where(team.name.eq(condition.getTeamName())))
+                        : null,
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        };
+    }
+
+    private BooleanExpression usernameMatches(MemberSearchCondition condition) {
+        String username = condition.getUsername();
+        if (!hasText(username)) {
+            return null;
+        }
+        // 대소문자 무시는 lower(username) 대신 저장된 소문자 컬럼(인덱스)과 비교한다.
+        StringPath column = condition.isIgnoreCase() ? member.usernameLower : member.username;
+        String value = condition.isIgnoreCase() ? Member.normalize(username) : username;
+        if (condition.getUsernameMatch() == UsernameMatch.PREFIX) {
+            return column.startsWith(value); // like 'x%' -> 인덱스 범위 검색
+        }
+        if (condition.getUsernameMatch() == UsernameMatch.CONTAINS) {
+            return usernameContains(column, value);
+        }
+        return column.eq(value);
+    }
+
+    // like '%x%' 는 인덱스를 못 타므로 trigram 색인으로 후보 id 를 먼저 좁힌다. 좁힐 수 없으면 그냥 like
+    private BooleanExpression usernameContains(StringPath column, String username) {
+        BooleanExpression contains = column.contains(username);
+        List<Long> candidates = usernameCandidates(username);
+        if (candidates == null) {
+            return contains;
+        }
+        if (candidates.isEmpty()) {
+            return member.id.isNull(); // 항상 거짓
+        }
+        return member.id.in(candidates).and(contains);
+    }
+
+    // trigram 색인은 flush 이벤트로 채워지므로 쿼리를 만들기 전에 flush 해서 아직 flush 되지 않은 회원도 후보에 들어가게 한다.
+    // (읽기 전용 트랜잭션에는 flush 할 변경이 없다)
+    private void flushForUsernameContains(MemberSearchCondition condition) {
+        if (condition.getUsernameMatch() == UsernameMatch.CONTAINS && hasText(condition.getUsername())
+                && inReadWriteTransaction()) {
+            em.flush();
+        }
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username): null;
+    // trigram 색인이 좁힌 후보 id. 좁힐 수 없으면 null
+    private List<Long> usernameCandidates(String username) {
+        long[] candidates = usernameTrigramIndex.candidates(username);
+        if (candidates == null) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>(candidates.length);
+        for (long id : candidates) {
+            ids.add(id);
+        }
+        return ids;
     }
 
     private BooleanExpression teamNameEq(String teamName) {
@@ -125,7 +498,60 @@ public class MemberJpaRepository {
         return ageGoe != null ? member.age.goe(ageGoe) : null;
     }
     private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.goe(ageLoe) : null;
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+
+    // offset 대신 마지막으로 읽은 키 이후부터 읽는다. 몇 번째 페이지든 인덱스 seek 한 번으로 끝난다.
+    @Transactional(readOnly = true)
+    public MemberCursorPage searchByCursor(MemberSearchCondition condition, MemberCursor.Order order,
+                                           MemberCursor cursor, int size){
+        if (cursor != null && cursor.getOrder() != order) {
+            throw new IllegalArgumentException("cursor was issued for order " + cursor.getOrder());
+        }
+        flushForUsernameContains(condition);
+
+        List<MemberTeamDto> rows = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameMatches(condition),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe()),
+                        after(cursor)
+                )
+                .orderBy(cursorOrder(order))
+                .limit(size + 1) // 한 건 더 읽어서 다음 페이지 존재 여부를 판단
+                .fetch();
+
+        boolean hasNext = rows.size() > size;
+        List<MemberTeamDto> content = hasNext ? new ArrayList<>(rows.subList(0, size)) : rows;
+        String nextCursor = hasNext ? MemberCursor.after(order, content.get(size - 1)).encode() : null;
+        return new MemberCursorPage(content, nextCursor, hasNext);
+    }
+
+    private BooleanExpression after(MemberCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        if (cursor.getOrder() == MemberCursor.Order.AGE) {
+            return member.age.gt(cursor.getAge())
+                    .or(member.age.eq(cursor.getAge()).and(member.id.gt(cursor.getMemberId())));
+        }
+        return member.id.gt(cursor.getMemberId());
+    }
+
+    private OrderSpecifier<?>[] cursorOrder(MemberCursor.Order order) {
+        if (order == MemberCursor.Order.AGE) {
+            return new OrderSpecifier<?>[]{member.age.asc(), member.id.asc()};
+        }
+        return new OrderSpecifier<?>[]{member.id.asc()};
     }
 
 
@@ -0,0 +1,61 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.QueryPlanDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MemberJpaRepository.search 가 실행하는 SQL 에 EXPLAIN 을 실행해서 인덱스를 타는지 확인한다.
+ * SQL 은 search 와 같은 JPQL 템플릿을 번역해서 얻고, CONTAINS 는 search 처럼 trigram 후보 id 조건을 붙여
+ * :ids 를 Hibernate 의 in 절 패딩과 같은 길이로 펼친다. (쿼리는 실행하지 않는다)
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberQueryPlanInspector {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MemberJdbcSearch memberJdbcSearch;
+    private final MemberSearchQueryCache searchQueryCache;
+    private final UsernameTrigramIndex usernameTrigramIndex;
+
+    public QueryPlanDto explain(MemberSearchCondition condition) {
+        int shape = MemberSearchQueryCache.shapeOf(condition);
+        List<Object> args = new ArrayList<>(Arrays.asList(MemberJdbcSearch.arguments(condition, shape)));
+        long[] candidates = (shape & MemberSearchQueryCache.USERNAME_CONTAINS) != 0
+                ? usernameTrigramIndex.candidates(MemberSearchQueryCache.usernameValue(condition)) : null;
+
+        String sql;
+        if (candidates == null) {
+            sql = memberJdbcSearch.sql(shape);
+        } else if (candidates.length == 0) { // search 도 DB 에 가지 않는다.
+            return new QueryPlanDto(null, Collections.singletonList("no query: trigram index found no candidates"));
+        } else {
+            int slots = MemberSearchQueryCache.paddedSize(candidates.length);
+            sql = memberJdbcSearch.translate(expandIds(
+                    searchQueryCache.jpql(shape | MemberSearchQueryCache.CANDIDATE_IDS), slots));
+            List<Object> ids = new ArrayList<>(slots);
+            for (int i = 0; i < slots; i++) { // 패딩 자리는 Hibernate 처럼 마지막 값을 반복한다.
+                ids.add(candidates[Math.min(i, candidates.length - 1)]);
+            }
+            args.addAll(1, ids); // username 다음, teamName 앞 (템플릿 순서)
+        }
+        List<String> plan = jdbcTemplate.query("explain " + sql, (rs, rowNum) -> rs.getString(1), args.toArray());
+        return new QueryPlanDto(sql, plan);
+    }
+
+    // "m.id in :ids" -> "m.id in (:ids0, :ids1, ...)"
+    private static String expandIds(String jpql, int slots) {
+        StringBuilder ids = new StringBuilder("(");
+        for (int i = 0; i < slots; i++) {
+            ids.append(i == 0 ? "" : ", ").append(":ids").append(i);
+        }
+        return jpql.replace(":ids", ids.append(')').toString());
+    }
+}
@@ -0,0 +1,152 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.UsernameMatch;
+import com.practice.querydsl.model.Member;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 검색 조건 중 어떤 값이 채워져 있는지(shape)에 따라 JPQL 을 한 번만 만들어 재사용한다.
+ * 조건 4개와 username 비교 방식으로 shape 가 정해지고, 같은 JPQL 문자열은 Hibernate 쿼리 플랜 캐시에서 한 번만 파싱된다.
+ * <p>
+ * MemberJpaRepository.search 가 실행하는 쿼리 그 자체이고, JDBC 검색과 실행 계획 확인도 이 JPQL 에서 SQL 을 얻는다.
+ * 페이징, 스트리밍, 커서 검색은 같은 조건을 Querydsl 로 만들기 때문에 조건의 의미가 바뀌면 양쪽을 함께 고쳐야 한다.
+ * (MemberJpaRepositoryTest 가 searchByBuilder 와 결과를 비교한다)
+ */
+@Component
+public class MemberSearchQueryCache {
+
+    static final int USERNAME = 1;
+    static final int TEAM_NAME = 1 << 1;
+    static final int AGE_GOE = 1 << 2;
+    static final int AGE_LOE = 1 << 3;
+    static final int USERNAME_PREFIX = 1 << 4;   // USERNAME 과 함께 설정된다.
+    static final int USERNAME_CONTAINS = 1 << 5;
+    static final int USERNAME_IGNORE_CASE = 1 << 6;
+    static final int CANDIDATE_IDS = 1 << 7;     // trigram 색인이 좁힌 후보 id (:ids). 조건이 아니라 search 가 붙인다.
+
+    private final ConcurrentMap<Integer, String> templates = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) {
+            shape |= USERNAME;
+            if (condition.getUsernameMatch() == UsernameMatch.PREFIX) shape |= USERNAME_PREFIX;
+            if (condition.getUsernameMatch() == UsernameMatch.CONTAINS) shape |= USERNAME_CONTAINS;
+            if (condition.isIgnoreCase()) shape |= USERNAME_IGNORE_CASE;
+        }
+        if (hasText(condition.getTeamName())) shape |= TEAM_NAME;
+        if (condition.getAgeGoe() != null) shape |= AGE_GOE;
+        if (condition.getAgeLoe() != null) shape |= AGE_LOE;
+        return shape;
+    }
+
+    // 메트릭 태그용. 예) "teamName+ageGoe", 조건이 없으면 "none"
+    public static String describe(int shape) {
+        StringBuilder name = new StringBuilder();
+        if ((shape & USERNAME) != 0) name.append("+username");
+        if ((shape & USERNAME_PREFIX) != 0) name.append("Prefix");
+        if ((shape & USERNAME_CONTAINS) != 0) name.append("Contains");
+        if ((shape & USERNAME_IGNORE_CASE) != 0) name.append("IgnoreCase");
+        if ((shape & TEAM_NAME) != 0) name.append("+teamName");
+        if ((shape & AGE_GOE) != 0) name.append("+ageGoe");
+        if ((shape & AGE_LOE) != 0) name.append("+ageLoe");
+        return name.length() == 0 ? "none" : name.substring(1);
+    }
+
+    // 비교할 username. 대소문자 무시는 저장된 소문자 컬럼과 비교하므로 정규화한다. (trigram 후보도 이 값으로 구한다)
+    public static String usernameValue(MemberSearchCondition condition) {
+        return condition.isIgnoreCase() ? Member.normalize(condition.getUsername()) : condition.getUsername();
+    }
+
+    // :username 에 바인딩할 값. like 로 비교하는 경우 와일드카드를 이스케이프한다. (escape '!')
+    public static String usernameParameter(MemberSearchCondition condition) {
+        String username = usernameValue(condition);
+        if (condition.getUsernameMatch() == UsernameMatch.PREFIX) {
+            return escapeLike(username) + "%";
+        }
+        if (condition.getUsernameMatch() == UsernameMatch.CONTAINS) {
+            return "%" + escapeLike(username) + "%";
+        }
+        return username;
+    }
+
+    // Hibernate 의 in 절 패딩(in_clause_parameter_padding)과 같은 길이: 2의 거듭제곱으로 올린다.
+    public static int paddedSize(int size) {
+        int floor = Integer.highestOneBit(size);
+        return floor == size ? size : floor << 1;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    public String jpql(int shape) {
+        String jpql = templates.get(shape);
+        if (jpql != null) {
+            hits.incrementAndGet();
+            return jpql;
+        }
+        String built = build(shape);
+        String previous = templates.putIfAbsent(shape, built);
+        misses.incrementAndGet();
+        return previous != null ? previous : built;
+    }
+
+    public Stats stats() {
+        return new Stats(templates.size(), hits.get(), misses.get());
+    }
+
+    private String build(int shape) {
+        StringBuilder jpql = new StringBuilder(
+                "select new com.practice.querydsl.dto.MemberTeamDto(m.id, m.username, m.age, t.id, t.name)" +
+                " from Member m left join m.team t");
+        String glue = " where ";
+        if ((shape & USERNAME) != 0) {
+            boolean like = (shape & (USERNAME_PREFIX | USERNAME_CONTAINS)) != 0;
+            String column = (shape & USERNAME_IGNORE_CASE) != 0 ? "m.usernameLower" : "m.username";
+            jpql.append(glue).append(column).append(like ? " like :username escape '!'" : " = :username");
+            glue = " and ";
+        }
+        if ((shape & CANDIDATE_IDS) != 0) {
+            jpql.append(glue).append("m.id in :ids");
+            glue = " and ";
+        }
+        if ((shape & TEAM_NAME) != 0) {
+            jpql.append(glue).append("t.name = :teamName");
+            glue = " and ";
+        }
+        if ((shape & AGE_GOE) != 0) {
+            jpql.append(glue).append("m.age >= :ageGoe");
+            glue = " and ";
+        }
+        if ((shape & AGE_LOE) != 0) {
+            jpql.append(glue).append("m.age <= :ageLoe");
+        }
+        return jpql.toString();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Stats {
+        private final int shapes;
+        private final long hits;
+        private final long misses;
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberDto;
+import com.practice.querydsl.dto.QTeamStatsDto;
+import com.practice.querydsl.dto.TeamMembersDto;
+import com.practice.querydsl.dto.TeamStatsDto;
+import com.practice.querydsl.model.Team;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.practice.querydsl.model.QMember.member;
+import static com.practice.querydsl.model.QTeam.team;
+import static com.practice.querydsl.model.QTeamStats.teamStats;
+
+@Repository
+@RequiredArgsConstructor
+public class TeamQueryRepository {
+
+    private final JPAQueryFactory queryFactory;
+
+    // 컬렉션 fetch join + limit 은 메모리에서 페이징하므로,
+    // 팀만 먼저 페이징하고 해당 팀들의 회원을 IN 쿼리 한 번으로 가져온다. (페이지당 쿼리 2번 + 필요할 때만 count)
+    public Page<TeamMembersDto> findTeamsWithMembers(Pageable pageable){
+        List<Tuple> teams = queryFactory
+                .select(team.id, team.name)
+                .from(team)
+                .orderBy(team.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        Map<Long, TeamMembersDto> byId = new LinkedHashMap<>();
+        for (Tuple tuple : teams) {
+            Long teamId = tuple.get(team.id);
+            byId.put(teamId, new TeamMembersDto(teamId, tuple.get(team.name)));
+        }
+
+        if (!byId.isEmpty()) {
+            List<Tuple> members = queryFactory
+                    .select(member.team.id, member.username, member.age)
+                    .from(member)
+                    .where(member.team.id.in(byId.keySet()))
+                    .orderBy(member.id.asc())
+                    .fetch();
+            for (Tuple tuple : members) {
+                byId.get(tuple.get(member.team.id)).getMembers()
+                        .add(new MemberDto(tuple.get(member.username), tuple.get(member.age)));
+            }
+        }
+
+        return PageableExecutionUtils.getPage(new ArrayList<>(byId.values()), pageable,
+                () -> queryFactory.select(team.count()).from(team).fetchOne());
+    }
+
+    // 쿼리 캐시(team-by-name) + Team 엔티티 2차 캐시로, 캐시에 있으면 DB 에 가지 않는다.
+    public Optional<Team> findByName(String name){
+        return Optional.ofNullable(queryFactory
+                .selectFrom(team)
+                .where(team.name.eq(name))
+                .setHint(org.hibernate.annotations.QueryHints.CACHEABLE, true)
+                .setHint(org.hibernate.annotations.QueryHints.CACHE_REGION, "team-by-name")
+                .fetchFirst());
+    }
+
+    // member 를 집계하지 않고 요약 테이블만 읽는다. O(팀 수)
+    public List<TeamStatsDto> findTeamStats(){
+        return queryFactory
+                .select(new QTeamStatsDto(
+                        team.id,
+                        team.name,
+                        teamStats.memberCount,
+                        teamStats.ageSum,
+                        teamStats.minAge,
+                        teamStats.maxAge))
+                .from(teamStats)
+                .join(team).on(team.id.eq(teamStats.teamId))
+                .orderBy(team.name.asc())
+                .fetch();
+    }
+}
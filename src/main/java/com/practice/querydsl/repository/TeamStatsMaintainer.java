@@ -0,0 +1,265 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * team_stats 를 증분으로 유지한다.
+ * <ul>
+ *     <li>엔티티 변경(persist, changeTeam, 나이 수정, remove): Hibernate post 이벤트에서 팀별 증감을 모아두었다가
+ *     커밋 직전(flush 이후) 한 번에 반영한다.</li>
+ *     <li>벌크 연산: 영향을 받은 팀만 다시 집계한다. (MemberChangedEvent)</li>
+ *     <li>매일 전체 재집계로 어긋난 값을 바로잡는다.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TeamStatsMaintainer implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String APPLY_DELTA =
+            "update team_stats set member_count = member_count + :countDelta, age_sum = age_sum + :ageDelta," +
+            " min_age = (select min(m.age) from member m where m.team_id = :teamId)," +
+            " max_age = (select max(m.age) from member m where m.team_id = :teamId)" +
+            " where team_id = :teamId";
+
+    private static final String RECOMPUTE =
+            "update team_stats s set" +
+            " member_count = (select count(*) from member m where m.team_id = s.team_id)," +
+            " age_sum = (select coalesce(sum(m.age), 0) from member m where m.team_id = s.team_id)," +
+            " min_age = (select min(m.age) from member m where m.team_id = s.team_id)," +
+            " max_age = (select max(m.age) from member m where m.team_id = s.team_id)" +
+            " where s.team_id in (:teamIds)";
+
+    // 아직 요약 행이 없는 팀은 처음부터 집계해서 넣는다. (flush 이후라 방금 추가된 회원도 포함)
+    // 중복 키 오류를 직접 처리하려고 JDBC 로 실행하므로 IN 목록의 ? 는 실행할 때 채운다.
+    private static final String INSERT_MISSING =
+            "insert into team_stats (team_id, member_count, age_sum, min_age, max_age)" +
+            " select t.team_id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)" +
+            " from team t left join member m on m.team_id = t.team_id" +
+            " where t.team_id in (%s)" +
+            " and not exists (select 1 from team_stats s where s.team_id = t.team_id)" +
+            " group by t.team_id";
+
+    private static final String INSERT_ALL =
+            "insert into team_stats (team_id, member_count, age_sum, min_age, max_age)" +
+            " select t.team_id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)" +
+            " from team t left join member m on m.team_id = t.team_id" +
+            " group by t.team_id";
+
+    private final EntityManagerFactory emf;
+    private final EntityManager em;
+
+    // 세션(트랜잭션)별로 모아둔 증감
+    private final Map<SharedSessionContractImplementor, Deltas> pending = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            Object[] state = event.getState();
+            deltas(event.getSession()).add(teamId(state, persister), 1, age(state, persister));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) {
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        Object[] state = event.getState();
+        Object[] oldState = event.getOldState();
+        Deltas deltas = deltas(event.getSession());
+        if (oldState == null) { // 준영속 update 등으로 이전 값(이전 팀)을 모르면 모든 팀을 다시 집계
+            deltas.recomputeAll();
+            return;
+        }
+        deltas.add(teamId(oldState, persister), -1, -age(oldState, persister));
+        deltas.add(teamId(state, persister), 1, age(state, persister));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Member) {
+            EntityPersister persister = event.getPersister();
+            Object[] state = event.getDeletedState();
+            deltas(event.getSession()).add(teamId(state, persister), -1, -age(state, persister));
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    // 벌크 연산은 엔티티 이벤트가 없으므로 영향을 받은 팀만 다시 집계한다.
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        if (event.isBulk() && !event.getTeamIds().isEmpty()) {
+            recompute(em.unwrap(SessionImplementor.class), event.getTeamIds());
+        }
+    }
+
+    @Transactional
+    @Scheduled(cron = "${member.team-stats.reconcile-cron:0 0 4 * * *}")
+    public void rebuildAll() {
+        long start = System.nanoTime();
+        em.createNativeQuery("delete from team_stats").executeUpdate();
+        int teams = em.createNativeQuery(INSERT_ALL).executeUpdate();
+        log.info("team_stats rebuilt: {} teams in {} ms", teams, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Deltas deltas(EventSource session) {
+        return pending.computeIfAbsent(session, key -> {
+            Deltas deltas = new Deltas();
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) deltas::apply);
+            session.getActionQueue().registerProcess(
+                    (AfterTransactionCompletionProcess) (success, s) -> pending.remove(s));
+            return deltas;
+        });
+    }
+
+    // 요약 행이 없는 팀은 먼저 넣고, 그다음 모든 대상 팀을 다시 집계한다.
+    // 넣기 직전에 다른 트랜잭션이 먼저 넣은 행(우리 회원이 빠진 값)도 이때 바로잡힌다.
+    private void recompute(SessionImplementor session, Collection<Long> teamIds) {
+        insertMissing(session, teamIds);
+        session.createNativeQuery(RECOMPUTE)
+                .addSynchronizedQuerySpace("team_stats")
+                .setParameterList("teamIds", teamIds)
+                .executeUpdate();
+    }
+
+    // 같은 팀의 첫 회원을 동시에 추가한 트랜잭션끼리는 둘 다 요약 행을 넣으려 해서 늦은 쪽은 중복 키로 실패한다.
+    // Hibernate 로 실행하면 실패한 문장이 트랜잭션을 rollback-only 로 만들기 때문에 JDBC 로 savepoint 안에서 실행하고,
+    // 중복이면 savepoint 로만 되돌린다. (행은 이미 있으니 이어지는 재집계로 충분하다)
+    private void insertMissing(SessionImplementor session, Collection<Long> teamIds) {
+        String sql = String.format(INSERT_MISSING, String.join(", ", Collections.nCopies(teamIds.size(), "?")));
+        session.doWork(connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                int index = 1;
+                for (Long teamId : teamIds) {
+                    statement.setLong(index++, teamId);
+                }
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+                connection.rollback(savepoint);
+                log.debug("team_stats rows for {} were inserted concurrently", teamIds);
+                return;
+            }
+            connection.releaseSavepoint(savepoint);
+        });
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException
+                || e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    private Set<Long> allTeamIds(SessionImplementor session) {
+        return new HashSet<>(session.createQuery("select t.id from Team t", Long.class).getResultList());
+    }
+
+    private static Long teamId(Object[] state, EntityPersister persister) {
+        Team team = (Team) state[persister.getEntityMetamodel().getPropertyIndex("team")];
+        return team != null ? team.getId() : null;
+    }
+
+    private static int age(Object[] state, EntityPersister persister) {
+        return (Integer) state[persister.getEntityMetamodel().getPropertyIndex("age")];
+    }
+
+    private class Deltas {
+
+        private final Map<Long, long[]> byTeam = new HashMap<>(); // {count, ageSum}
+        private boolean recomputeAll;
+
+        void add(Long teamId, int count, int age) {
+            if (teamId == null) {
+                return;
+            }
+            long[] delta = byTeam.computeIfAbsent(teamId, id -> new long[2]);
+            delta[0] += count;
+            delta[1] += age;
+        }
+
+        void recomputeAll() {
+            recomputeAll = true;
+        }
+
+        void apply(SessionImplementor session) {
+            if (recomputeAll) {
+                Set<Long> teamIds = allTeamIds(session);
+                if (!teamIds.isEmpty()) {
+                    TeamStatsMaintainer.this.recompute(session, teamIds);
+                }
+                return;
+            }
+            Set<Long> missing = new HashSet<>();
+            for (Map.Entry<Long, long[]> entry : byTeam.entrySet()) {
+                int updated = session.createNativeQuery(APPLY_DELTA)
+                        .addSynchronizedQuerySpace("team_stats")
+                        .setParameter("countDelta", entry.getValue()[0])
+                        .setParameter("ageDelta", entry.getValue()[1])
+                        .setParameter("teamId", entry.getKey())
+                        .executeUpdate();
+                if (updated == 0) {
+                    missing.add(entry.getKey());
+                }
+            }
+            if (!missing.isEmpty()) {
+                TeamStatsMaintainer.this.recompute(session, missing);
+            }
+        }
+    }
+}
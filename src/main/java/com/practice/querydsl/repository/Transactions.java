@@ -0,0 +1,18 @@
+package com.practice.querydsl.repository;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 현재 스레드의 트랜잭션 상태 확인. flush 가 필요한지, 캐시/스냅샷을 건너뛰어야 하는지 판단할 때 쓴다.
+ */
+public final class Transactions {
+
+    private Transactions() {
+    }
+
+    // 읽기 전용이 아닌 실제 트랜잭션 안인지 (아직 flush 되지 않은 변경이 있을 수 있다)
+    public static boolean inReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}
@@ -0,0 +1,298 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.model.Member;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.mysema.commons.lang.CloseableIterator;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.practice.querydsl.model.QMember.member;
+
+/**
+ * username 부분 일치 검색용 인메모리 trigram 역색인.
+ * <p>
+ * 색인은 후보 id 를 좁히는 용도로만 쓰고 최종 확인은 DB 의 like 조건으로 한다. 그래서 색인이 실제보다 많은 id 를
+ * 돌려주는 것(삭제, 롤백, username 변경 이전 값)은 괜찮고, 새 username 만 빠짐없이 추가되면 된다.
+ * 그래서 커밋을 기다리지 않고 flush 시점의 insert/update 이벤트로 추가해서 같은 트랜잭션 안의 검색에도 보이게 하고,
+ * 쌓인 불필요한 id 는 주기적으로 전체를 다시 만들어 정리한다.
+ * <p>
+ * 재구성은 스캔 시점에 커밋된 데이터만 본다. 재구성을 시작하기 전에 flush 됐지만 아직 커밋되지 않은 변경은
+ * 스캔에 안 보일 수 있으므로, 트랜잭션이 끝날 때까지 {@code uncommitted} 에 들고 있다가 새 색인에 미리 넣는다.
+ */
+@Slf4j
+@Component
+public class UsernameTrigramIndex implements PostInsertEventListener, PostUpdateEventListener {
+
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+    private final int maxCandidates;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, PostingList> postings = new HashMap<>();
+    private Map<String, PostingList> rebuilding; // 재구성 중에 커밋된 변경도 새 색인에 넣기 위해
+    private final Set<Change> uncommitted = new HashSet<>(); // flush 됐지만 트랜잭션이 아직 끝나지 않은 변경
+    private volatile boolean ready;
+
+    public UsernameTrigramIndex(EntityManagerFactory emf, JPAQueryFactory queryFactory,
+                                @Value("${member.search.trigram.max-candidates:1000}") int maxCandidates) {
+        this.emf = emf;
+        this.queryFactory = queryFactory;
+        this.maxCandidates = maxCandidates;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, (PostInsertEventListener) this);
+        registry.appendListeners(EventType.POST_UPDATE, (PostUpdateEventListener) this);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${member.search.trigram.rebuild-cron:0 30 4 * * *}")
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.nanoTime();
+        Map<String, PostingList> rebuilt = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            rebuilding = rebuilt;
+            for (Change change : uncommitted) { // 스캔 전에 커밋될지 후에 커밋될지 모른다
+                add(rebuilt, change.id, change.username);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long rows = 0;
+        try (CloseableIterator<Tuple> iterator = queryFactory
+                .select(member.id, member.username)
+                .from(member)
+                .setHint(org.hibernate.annotations.QueryHints.FETCH_SIZE, 1000)
+                .iterate()) {
+            while (iterator.hasNext()) {
+                Tuple tuple = iterator.next();
+                lock.writeLock().lock();
+                try {
+                    add(rebuilt, tuple.get(member.id), tuple.get(member.username));
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                rows++;
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                rebuilding = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            postings = rebuilt;
+            rebuilding = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("username trigram index rebuilt: {} members, {} trigrams in {} ms",
+                rows, rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * username 에 keyword 를 포함할 수 있는 회원 id 후보. 색인으로 좁힐 수 없으면(준비 전, 3글자 미만, 후보가 너무 많음) null
+     */
+    public long[] candidates(String keyword) {
+        Set<String> trigrams = trigrams(keyword);
+        if (!ready || trigrams.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            PostingList smallest = null;
+            for (String trigram : trigrams) {
+                PostingList list = postings.get(trigram);
+                if (list == null) {
+                    return new long[0];
+                }
+                if (smallest == null || list.size() < smallest.size()) {
+                    smallest = list;
+                }
+            }
+            long[] result = smallest.sortedIds();
+            int size = result.length;
+            for (String trigram : trigrams) {
+                PostingList list = postings.get(trigram);
+                if (list == smallest) {
+                    continue;
+                }
+                int kept = 0;
+                for (int i = 0; i < size; i++) {
+                    if (list.contains(result[i])) {
+                        result[kept++] = result[i];
+                    }
+                }
+                size = kept;
+            }
+            return size > maxCandidates ? null : Arrays.copyOf(result, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            index(event.getSession(), (Long) event.getId(), ((Member) event.getEntity()).getUsername());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            index(event.getSession(), (Long) event.getId(), ((Member) event.getEntity()).getUsername());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void index(EventSource session, Long id, String username) {
+        Change change = new Change(id, username);
+        lock.writeLock().lock();
+        try {
+            add(postings, id, username);
+            if (rebuilding != null) {
+                add(rebuilding, id, username);
+            }
+            uncommitted.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // 커밋이든 롤백이든 끝나면 이후의 재구성 스캔이 DB 에서 직접 본다.
+        session.getActionQueue().registerProcess((success, completedSession) -> {
+            lock.writeLock().lock();
+            try {
+                uncommitted.remove(change);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private static void add(Map<String, PostingList> target, Long id, String username) {
+        if (id == null || username == null) {
+            return;
+        }
+        for (String trigram : trigrams(username)) {
+            target.computeIfAbsent(trigram, key -> new PostingList()).add(id);
+        }
+    }
+
+    // 대소문자 구분 없이 색인한다. (DB 쪽 비교가 최종 판단)
+    static Set<String> trigrams(String value) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        if (value == null) {
+            return trigrams;
+        }
+        String normalized = value.toLowerCase(Locale.ROOT);
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            trigrams.add(normalized.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    // 같은 id 가 여러 트랜잭션에서 바뀔 수 있어서 equals 없이 인스턴스로 구분한다.
+    private static class Change {
+
+        private final Long id;
+        private final String username;
+
+        Change(Long id, String username) {
+            this.id = id;
+            this.username = username;
+        }
+    }
+
+    // boxing 없이 id 를 보관한다. 추가는 뒤에 붙이고, 조회할 때 필요하면 정렬/중복 제거한다.
+    private static class PostingList {
+
+        private long[] ids = new long[4];
+        private int size;
+        private boolean sorted = true;
+
+        synchronized void add(long id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                if (ids[size - 1] == id) {
+                    return;
+                }
+                sorted = false;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long[] sortedIds() {
+            sort();
+            return Arrays.copyOf(ids, size);
+        }
+
+        synchronized boolean contains(long id) {
+            sort();
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void sort() {
+            if (sorted) {
+                return;
+            }
+            Arrays.sort(ids, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || ids[unique - 1] != ids[i]) {
+                    ids[unique++] = ids[i];
+                }
+            }
+            size = unique;
+            sorted = true;
+        }
+    }
+}
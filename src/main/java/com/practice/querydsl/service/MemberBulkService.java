@@ -0,0 +1,134 @@
+package com.practice.querydsl.service;
+
+import com.practice.querydsl.dto.BulkOperationResult;
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.repository.MemberJpaRepository;
+import com.querydsl.core.Tuple;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import static com.practice.querydsl.model.QMember.member;
+import static com.practice.querydsl.repository.Transactions.inReadWriteTransaction;
+
+/**
+ * 테이블 전체를 한 문장으로 갱신하지 않고 id 구간(청크)마다 별도 트랜잭션으로 나눠 실행한다.
+ * 청크 사이에는 pause 만큼 쉬어서 다른 트랜잭션이 락을 얻을 수 있게 한다.
+ * <p>
+ * 조건이 없으면(전체 회원) 실행하지 않는다. 쓰기 트랜잭션 안에서도 실행하지 않는다. 청크 트랜잭션에는 호출한 쪽의
+ * flush 전 변경이 보이지 않고(그 엔티티는 청크 후 분리되면서 버려진다), 호출한 쪽이 잡은 행 락은 청크가 기다리다 교착된다.
+ */
+@Slf4j
+@Service
+public class MemberBulkService {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final TransactionTemplate chunkTx;
+    private final int defaultChunkSize;
+    private final Duration defaultPause;
+
+    public MemberBulkService(MemberJpaRepository memberJpaRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${member.bulk.chunk-size:1000}") int defaultChunkSize,
+                             @Value("${member.bulk.pause:50ms}") Duration defaultPause) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.defaultChunkSize = defaultChunkSize;
+        this.defaultPause = defaultPause;
+    }
+
+    public BulkOperationResult addAge(MemberSearchCondition condition, int amount) {
+        return addAge(condition, amount, defaultChunkSize, defaultPause);
+    }
+
+    public BulkOperationResult addAge(MemberSearchCondition condition, int amount, int chunkSize, Duration pause) {
+        return run("addAge", condition, chunkSize, pause,
+                (ids, teamIds) -> memberJpaRepository.addAgeByIds(ids, amount, teamIds));
+    }
+
+    public BulkOperationResult delete(MemberSearchCondition condition) {
+        return delete(condition, defaultChunkSize, defaultPause);
+    }
+
+    public BulkOperationResult delete(MemberSearchCondition condition, int chunkSize, Duration pause) {
+        return run("delete", condition, chunkSize, pause, memberJpaRepository::deleteByIds);
+    }
+
+    private BulkOperationResult run(String name, MemberSearchCondition condition, int chunkSize, Duration pause,
+                                    BiFunction<List<Long>, Set<Long>, Long> operation) {
+        if (!condition.hasFilter()) {
+            throw new IllegalArgumentException("bulk " + name + " requires at least one search condition");
+        }
+        if (inReadWriteTransaction()) {
+            throw new IllegalStateException("bulk " + name + " must not run inside a read-write transaction");
+        }
+        BulkOperationResult result = new BulkOperationResult();
+        long start = System.nanoTime();
+        Long afterId = null;
+
+        while (true) {
+            Long cursor = afterId;
+            List<Long> ids = new ArrayList<>();
+            Long rows = chunkTx.execute(status -> {
+                List<Tuple> chunk = memberJpaRepository.findBulkChunk(condition, cursor, chunkSize);
+                if (chunk.isEmpty()) {
+                    return null;
+                }
+                Set<Long> teamIds = new HashSet<>();
+                for (Tuple tuple : chunk) {
+                    ids.add(tuple.get(member.id));
+                    teamIds.add(tuple.get(member.team.id));
+                }
+                teamIds.remove(null);
+                return operation.apply(ids, teamIds);
+            });
+            if (rows == null) {
+                break;
+            }
+
+            // 청크 트랜잭션은 커밋됐다. 호출한 쪽 트랜잭션이 들고 있던 엔티티 중 바뀐 것만 분리한다.
+            result.setEvicted(result.getEvicted() + memberJpaRepository.evict(ids));
+            result.addChunk(rows);
+            log.debug("bulk {} chunk #{}: {} rows (ids {}..{})",
+                    name, result.getRowsPerChunk().size(), rows, ids.get(0), ids.get(ids.size() - 1));
+            afterId = ids.get(ids.size() - 1);
+
+            if (ids.size() < chunkSize) {
+                break;
+            }
+            if (!pause(pause)) {
+                result.setInterrupted(true);
+                break;
+            }
+        }
+
+        result.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("bulk {} finished: {} rows in {} chunks, {} ms", name, result.getTotalRows(),
+                result.getRowsPerChunk().size(), result.getElapsedMillis());
+        return result;
+    }
+
+    private boolean pause(Duration pause) {
+        if (pause.isZero()) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
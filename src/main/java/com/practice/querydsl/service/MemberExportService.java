@@ -0,0 +1,309 @@
+package com.practice.querydsl.service;
+
+import com.practice.querydsl.dto.MemberExportStatus;
+import com.practice.querydsl.dto.MemberExportStatus.State;
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.repository.MemberJpaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 검색 결과 전체를 CSV 파일로 내보내는 백그라운드 작업.
+ * 행을 목록으로 모으지 않고 커서로 한 건씩 읽어 고정 크기 버퍼에 인코딩한 뒤 FileChannel 로 쓰기 때문에
+ * 결과 크기와 상관없이 힙 사용량이 일정하다. 완료된 파일은 retention 이 지나면 지운다.
+ */
+@Slf4j
+@Service
+public class MemberExportService {
+
+    private static final String HEADER = "member_id,username,age,team_id,team_name\n";
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final Path directory;
+    private final int fetchSize;
+    private final int bufferSize;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public MemberExportService(MemberJpaRepository memberJpaRepository,
+                               @Value("${member.export.dir:${java.io.tmpdir}/member-export}") String directory,
+                               @Value("${member.export.threads:2}") int threads,
+                               @Value("${member.export.queue-capacity:10}") int queueCapacity,
+                               @Value("${member.export.fetch-size:1000}") int fetchSize,
+                               @Value("${member.export.buffer-size:65536}") int bufferSize,
+                               @Value("${member.export.retention:1h}") Duration retention) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.directory = Paths.get(directory);
+        this.fetchSize = fetchSize;
+        this.bufferSize = bufferSize;
+        this.retention = retention;
+        // 큐가 차면 바로 거절한다. 내보내기가 커넥션을 모두 차지하면 안 된다.
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("member-export-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public MemberExportStatus start(MemberSearchCondition condition) {
+        Job job = new Job(UUID.randomUUID().toString(), condition.copy());
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RuntimeException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        return job.status();
+    }
+
+    public Optional<MemberExportStatus> status(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::status);
+    }
+
+    // 진행 중이면 다음 행을 쓰기 전에(늦어도 파일을 옮기기 전에) 멈추고, 만들던 파일은 지운다.
+    // COMPLETED 가 아닌 상태를 돌려줬다면 그 작업은 CANCELLED 로 끝난다.
+    public Optional<MemberExportStatus> cancel(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        job.cancelled = true;
+        synchronized (job) {
+            if (job.state == State.QUEUED) {
+                job.finish(State.CANCELLED, null);
+            }
+            return Optional.of(job.status());
+        }
+    }
+
+    // 완료된 작업의 파일. 완료 전이면 IllegalStateException
+    public Optional<Path> file(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (job.state != State.COMPLETED) {
+            throw new IllegalStateException("export " + id + " is " + job.state);
+        }
+        return Optional.of(job.file);
+    }
+
+    @Scheduled(fixedDelayString = "${member.export.cleanup-interval:PT10M}")
+    public void cleanUp() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == 0 || now - job.finishedAt < retention.toMillis()) {
+                return false;
+            }
+            deleteQuietly(job.file);
+            return true;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.cancelled = true);
+        executor.shutdownNow();
+    }
+
+    private void run(Job job) {
+        synchronized (job) {
+            if (job.state != State.QUEUED) {
+                return; // 대기 중에 취소됨
+            }
+            job.state = State.RUNNING;
+        }
+        long start = System.nanoTime();
+        Path part = directory.resolve(job.id + ".csv.part");
+        try {
+            Files.createDirectories(directory);
+            job.totalRows = memberJpaRepository.searchCount(job.condition, 0);
+            try (FileChannel channel = FileChannel.open(part,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                CsvWriter writer = new CsvWriter(channel, bufferSize);
+                writer.write(HEADER);
+                memberJpaRepository.searchEach(job.condition, fetchSize, row -> {
+                    if (job.cancelled) {
+                        throw new CancellationException();
+                    }
+                    writer.write(row);
+                    job.rowsWritten++;
+                    job.bytesWritten = writer.written;
+                });
+                writer.flush();
+                job.bytesWritten = writer.written;
+                channel.force(false);
+            }
+            // 행이 없거나 마지막 행 이후에 취소된 경우도 있으니, 취소와 겹치지 않게 확인하고 옮긴다.
+            synchronized (job) {
+                if (job.cancelled) {
+                    throw new CancellationException();
+                }
+                Files.move(part, job.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                job.finish(State.COMPLETED, null);
+            }
+            log.info("export {} finished: {} rows, {} bytes in {} ms", job.id, job.rowsWritten, job.bytesWritten,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (CancellationException e) {
+            deleteQuietly(part);
+            job.finish(State.CANCELLED, null);
+            log.info("export {} cancelled after {} rows", job.id, job.rowsWritten);
+        } catch (Exception e) {
+            deleteQuietly(part);
+            Throwable cause = e instanceof UncheckedIOException ? e.getCause() : e;
+            job.finish(State.FAILED, cause.toString());
+            log.warn("export {} failed", job.id, cause);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("failed to delete {}", path, e);
+        }
+    }
+
+    private class Job {
+        private final String id;
+        private final MemberSearchCondition condition;
+        private final Path file;
+        private volatile State state = State.QUEUED;
+        private volatile boolean cancelled;
+        private volatile long totalRows;
+        private volatile long rowsWritten; // 작업 스레드만 쓴다.
+        private volatile long bytesWritten;
+        private volatile String error;
+        private volatile long finishedAt;
+
+        Job(String id, MemberSearchCondition condition) {
+            this.id = id;
+            this.condition = condition;
+            this.file = directory.resolve(id + ".csv");
+        }
+
+        synchronized void finish(State state, String error) {
+            this.state = state;
+            this.error = error;
+            this.finishedAt = System.currentTimeMillis();
+        }
+
+        MemberExportStatus status() {
+            return new MemberExportStatus(id, state, rowsWritten, totalRows, bytesWritten, error);
+        }
+    }
+
+    /**
+     * 한 행을 재사용하는 StringBuilder 에 만들고, 고정 크기 direct 버퍼에 UTF-8 로 인코딩해서 버퍼가 찰 때마다 채널에 쓴다.
+     */
+    private static class CsvWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final StringBuilder line = new StringBuilder(128);
+        private long written;
+
+        CsvWriter(FileChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        void write(MemberTeamDto row) {
+            line.setLength(0);
+            line.append(row.getMemberId()).append(',');
+            appendField(row.getUsername());
+            line.append(',').append(row.getAge()).append(',');
+            if (row.getTeamId() != null) {
+                line.append(row.getTeamId());
+            }
+            line.append(',');
+            appendField(row.getTeamName());
+            line.append('\n');
+            write(line);
+        }
+
+        void write(CharSequence text) {
+            CharBuffer chars = CharBuffer.wrap(text);
+            encoder.reset();
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isUnderflow()) {
+                    break;
+                } else {
+                    throw new IllegalArgumentException("cannot encode: " + text);
+                }
+            }
+        }
+
+        void flush() {
+            drain();
+        }
+
+        private void drain() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+
+        // 쉼표, 따옴표, 줄바꿈이 있으면 따옴표로 감싼다. (RFC 4180)
+        private void appendField(String value) {
+            if (value == null) {
+                return;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                line.append(value);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.practice.querydsl.service;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.repository.MemberChangedEvent;
+import com.practice.querydsl.repository.MemberDataVersion;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 같은 조건의 검색이 동시에 들어오면 DB 조회는 먼저 온 요청(leader) 한 번만 하고, 나머지는 그 결과를 기다려 같이 받는다.
+ * 결과는 끝나는 즉시 버린다. (캐시가 아니다) member 쓰기가 일어나면 진행 중인 조회에는 더 이상 합류시키지 않아서
+ * 쓰기 이후에 도착한 요청이 쓰기 이전에 시작된 조회 결과를 받지 않게 한다. (이벤트 + 데이터 버전이 다르면 다른 조회)
+ */
+@Component
+public class MemberSearchCoalescer {
+
+    private final boolean enabled;
+    private final MemberDataVersion dataVersion; // 없으면 이벤트로만 분리
+    private final ConcurrentMap<Key, CompletableFuture<List<MemberTeamDto>>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong(); // 합류해서 아낀 조회 수
+    private final AtomicLong detached = new AtomicLong();
+
+    public MemberSearchCoalescer(MeterRegistry registry, boolean enabled) {
+        this(registry, null, enabled);
+    }
+
+    @Autowired
+    public MemberSearchCoalescer(MeterRegistry registry, MemberDataVersion dataVersion,
+                                 @Value("${member.search.coalescing.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        this.dataVersion = dataVersion;
+        FunctionCounter.builder("member.search.coalescing.executions", executions, AtomicLong::get)
+                .description("searches that ran a query").register(registry);
+        FunctionCounter.builder("member.search.coalescing.saved", coalesced, AtomicLong::get)
+                .description("searches that joined an in-flight query instead of running their own").register(registry);
+        Gauge.builder("member.search.coalescing.in-flight", inFlight, ConcurrentMap::size).register(registry);
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition, Supplier<List<MemberTeamDto>> query) {
+        // 트랜잭션 안의 조회는 커밋 전 데이터를 볼 수 있으므로 다른 요청과 나누지 않는다.
+        if (!enabled || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+        Key key = new Key(condition.copy(), dataVersion != null ? dataVersion.current() : 0);
+        CompletableFuture<List<MemberTeamDto>> mine = new CompletableFuture<>();
+        CompletableFuture<List<MemberTeamDto>> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return await(running);
+        }
+
+        executions.incrementAndGet();
+        try {
+            List<MemberTeamDto> rows = Collections.unmodifiableList(query.get()); // 여러 요청이 같은 목록을 받는다.
+            inFlight.remove(key, mine);
+            mine.complete(rows);
+            return rows;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e); // 기다리던 요청도 같은 예외로 실패한다.
+            throw e;
+        }
+    }
+
+    // 같은 트랜잭션 안에서의 후속 조회를 위해 쓰기 즉시 한 번,
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        detachAll();
+    }
+
+    // 커밋 이후에 커밋 이전 데이터를 읽는 조회가 남아 있을 수 있으니 한 번 더.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void afterMemberChangeCommitted(MemberChangedEvent event) {
+        detachAll();
+    }
+
+    // 진행 중인 조회는 계속되고 이미 합류한 요청은 그 결과를 받는다. 새 요청만 새로 조회한다.
+    public void detachAll() {
+        detached.addAndGet(inFlight.size());
+        inFlight.clear();
+    }
+
+    public Stats stats() {
+        return new Stats(enabled, inFlight.size(), executions.get(), coalesced.get(), detached.get());
+    }
+
+    private List<MemberTeamDto> await(CompletableFuture<List<MemberTeamDto>> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class Key {
+        private final MemberSearchCondition condition;
+        private final long dataVersion;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Stats {
+        private final boolean enabled;
+        private final int inFlight;
+        private final long executions;
+        private final long coalesced;
+        private final long detached;
+
+        public double getSavedRate() {
+            long total = executions + coalesced;
+            return total == 0 ? 0.0 : (double) coalesced / total;
+        }
+    }
+}
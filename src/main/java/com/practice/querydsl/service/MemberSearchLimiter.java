@@ -0,0 +1,183 @@
+package com.practice.querydsl.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * DB 를 치는 검색의 동시 실행 수를 지연시간에 맞춰 조절하고, 한도를 넘는 요청은 기다리게 하지 않고 바로 거절한다.
+ * <p>
+ * 검색 한 번의 지연시간(커넥션 대기 + 쿼리)을 짧은 평균과 긴 평균으로 나눠 보고, 짧은 평균이 늘어나면 그 비율만큼 한도를 줄인다.
+ * 커넥션 풀에 대기자가 있으면(hikaricp.connections.pending) 지연시간과 상관없이 줄인다. 여유가 있으면 sqrt(한도)만큼씩 늘린다.
+ * 실패한 검색(커넥션 획득 타임아웃, 쿼리 타임아웃 등)은 지연시간 표본이 되지 못하므로 그때마다 한도를 곱으로 줄인다.
+ * 풀이 고갈되면 성공하는 검색이 없어서 표본이 끊기기 때문에, 풀 대기자도 표본과 상관없이 주기적으로 한도를 줄인다.
+ * (Netflix concurrency-limits 의 gradient 방식)
+ */
+@Component
+public class MemberSearchLimiter {
+
+    private static final double SHORT_ALPHA = 0.2;
+    private static final double LONG_ALPHA = 0.02;
+    private static final double TOLERANCE = 1.5;   // 지연시간이 평소의 1.5배까지는 줄이지 않는다.
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;     // 실패, 풀 대기 시 곱해서 줄인다.
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private double shortRttNanos; // 지연시간 평균들은 synchronized(this) 안에서만 바꾼다.
+    private double longRttNanos;
+    private volatile double poolPending;
+    private volatile double poolWaitMillis;
+    private double lastAcquireCount;
+    private double lastAcquireMillis;
+
+    private final Counter rejected;
+
+    public MemberSearchLimiter(MeterRegistry registry,
+                               @Value("${member.search.limiter.enabled:true}") boolean enabled,
+                               @Value("${member.search.limiter.initial-limit:10}") int initialLimit,
+                               @Value("${member.search.limiter.min-limit:2}") int minLimit,
+                               @Value("${member.search.limiter.max-limit:100}") int maxLimit) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+
+        this.rejected = Counter.builder("member.search.limiter.rejected").register(registry);
+        Gauge.builder("member.search.limiter.limit", this, MemberSearchLimiter::getLimit).register(registry);
+        Gauge.builder("member.search.limiter.in-flight", inFlight, AtomicInteger::get).register(registry);
+        Gauge.builder("member.search.limiter.pool-wait", this, limiter -> limiter.poolWaitMillis)
+                .baseUnit("milliseconds").register(registry);
+    }
+
+    public <T> T execute(Supplier<T> search) {
+        if (!enabled) {
+            return search.get();
+        }
+        int current = inFlight.incrementAndGet();
+        if (current > getLimit()) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            throw new SearchOverloadedException(
+                    "too many concurrent member searches (limit " + getLimit() + ")", retryAfterSeconds());
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean overloaded = false;
+        try {
+            T result = search.get();
+            success = true;
+            return result;
+        } catch (RuntimeException e) {
+            overloaded = !(e instanceof IllegalArgumentException); // 잘못된 요청은 부하와 상관없다.
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+            if (success) {
+                onSample(System.nanoTime() - start, current);
+            } else if (overloaded) { // 타임아웃 등은 지연시간 표본이 없으므로 바로 줄인다.
+                backOff();
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        if (longRttNanos == 0) {
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+            return;
+        }
+        shortRttNanos += (rttNanos - shortRttNanos) * SHORT_ALPHA;
+        longRttNanos += (rttNanos - longRttNanos) * LONG_ALPHA;
+        if (longRttNanos > shortRttNanos * 2) { // 부하가 빠진 뒤에는 기준값도 빨리 내려온다.
+            longRttNanos = shortRttNanos * 2;
+        }
+
+        boolean poolSaturated = poolPending > 0;
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+        if (poolSaturated) {
+            gradient = Math.min(gradient, 0.8);
+        }
+        double current = limit;
+        if (gradient >= 1.0 && inFlightAtStart < current / 2) {
+            return; // 한도를 다 쓰지도 않는데 늘릴 필요는 없다.
+        }
+        double queue = poolSaturated ? 0 : Math.sqrt(current); // 풀이 꽉 찼으면 대기 여유도 주지 않는다.
+        double target = current * gradient + queue;
+        double next = current * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    synchronized void backOff() {
+        limit = Math.max(minLimit, limit * BACKOFF);
+    }
+
+    // 커넥션 풀 지표는 Spring Boot 가 풀마다 등록한다. (replica 풀 포함)
+    @Scheduled(fixedDelayString = "${member.search.limiter.pool-sample-interval:PT1S}")
+    public void samplePool() {
+        double pending = 0;
+        for (Gauge gauge : registry.find("hikaricp.connections.pending").gauges()) {
+            pending += gauge.value();
+        }
+        double acquireCount = 0;
+        double acquireMillis = 0;
+        for (Timer timer : registry.find("hikaricp.connections.acquire").timers()) {
+            acquireCount += timer.count();
+            acquireMillis += timer.totalTime(TimeUnit.MILLISECONDS);
+        }
+        double count = acquireCount - lastAcquireCount;
+        poolWaitMillis = count > 0 ? (acquireMillis - lastAcquireMillis) / count : 0;
+        lastAcquireCount = acquireCount;
+        lastAcquireMillis = acquireMillis;
+        poolPending = pending;
+        if (enabled && pending > 0) { // 성공하는 검색이 없어도(풀 고갈) 줄어들도록
+            backOff();
+        }
+    }
+
+    public Stats stats() {
+        synchronized (this) {
+            return new Stats(enabled, getLimit(), inFlight.get(), (long) rejected.count(),
+                    (long) (shortRttNanos / 1_000), (long) (longRttNanos / 1_000), poolPending, poolWaitMillis);
+        }
+    }
+
+    // 지금 실행 중인 검색들이 빠질 시간 정도
+    private synchronized long retryAfterSeconds() {
+        double seconds = shortRttNanos / 1_000_000_000.0 * 2;
+        return Math.max(1, (long) Math.ceil(seconds));
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Stats {
+        private final boolean enabled;
+        private final int limit;
+        private final int inFlight;
+        private final long rejected;
+        private final long shortRttMicros;
+        private final long longRttMicros;
+        private final double poolPending;
+        private final double poolWaitMillis;
+    }
+}
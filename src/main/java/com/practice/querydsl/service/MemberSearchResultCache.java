@@ -0,0 +1,162 @@
+package com.practice.querydsl.service;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.repository.MemberChangedEvent;
+import com.practice.querydsl.repository.MemberDataVersion;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.practice.querydsl.repository.Transactions.inReadWriteTransaction;
+
+/**
+ * 검색 결과를 조건별로 보관하는 LRU + TTL 캐시.
+ * member 쓰기가 일어나면 세대(generation)를 올려 전부 무효화하고,
+ * 쓰기 이전 세대에 시작된 조회 결과는 캐시에 넣지 않는다.
+ * 항목에는 조회를 시작할 때의 데이터 버전을 같이 저장해서, 이벤트 없이 엔티티만 바뀐 경우에도 버전이 오르면 버린다.
+ * <p>
+ * 쓰기 트랜잭션 안의 조회는 커밋 전 데이터를 볼 수 있으므로 캐시를 거치지 않는다.
+ * MemberTeamDto 는 변경 가능하므로 호출자마다 복사본을 돌려준다.
+ * 생성 세대 확인과 put, 전체 무효화를 한 락으로 묶어야 해서 Caffeine 대신 LinkedHashMap 으로 직접 관리한다.
+ */
+@Component
+public class MemberSearchResultCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final MemberDataVersion dataVersion; // 없으면 이벤트로만 무효화
+
+    private final Map<MemberSearchCondition, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public MemberSearchResultCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, null);
+    }
+
+    @Autowired
+    public MemberSearchResultCache(@Value("${member.search.result-cache.max-size:1000}") int maxSize,
+                                   @Value("${member.search.result-cache.ttl:30s}") Duration ttl,
+                                   MemberDataVersion dataVersion) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.dataVersion = dataVersion;
+        this.entries = new LinkedHashMap<MemberSearchCondition, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemberSearchCondition, Entry> eldest) {
+                if (size() > MemberSearchResultCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public List<MemberTeamDto> get(MemberSearchCondition condition, Supplier<List<MemberTeamDto>> loader) {
+        if (inReadWriteTransaction()) {
+            return loader.get();
+        }
+        MemberSearchCondition key = condition.copy();
+        long now = System.nanoTime();
+        long version = dataVersion != null ? dataVersion.current() : 0;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now < entry.expiresAt && entry.version == version) {
+                    hits.incrementAndGet();
+                    return copyOf(entry.rows);
+                }
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+
+        long startGeneration = generation.get();
+        List<MemberTeamDto> rows = loader.get();
+        synchronized (entries) {
+            // 조회 도중 쓰기가 있었다면 오래된 결과일 수 있으니 넣지 않는다.
+            if (generation.get() == startGeneration) {
+                entries.put(key, new Entry(copyOf(rows), System.nanoTime() + ttlNanos, version));
+            }
+        }
+        return rows;
+    }
+
+    // 같은 트랜잭션 안에서의 후속 조회를 위해 쓰기 즉시 한 번,
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        invalidateAll();
+    }
+
+    // 트랜잭션이 끝나면(롤백 포함) 그 사이 다른 트랜잭션이 채운 결과가 맞지 않을 수 있으니 한 번 더 비운다.
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void afterMemberChangeCompleted(MemberChangedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+        invalidations.incrementAndGet();
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(size, maxSize, hits.get(), misses.get(), evictions.get(), expirations.get(), invalidations.get());
+    }
+
+    private static List<MemberTeamDto> copyOf(List<MemberTeamDto> rows) {
+        List<MemberTeamDto> copy = new ArrayList<>(rows.size());
+        for (MemberTeamDto row : rows) {
+            copy.add(new MemberTeamDto(row.getMemberId(), row.getUsername(), row.getAge(),
+                    row.getTeamId(), row.getTeamName()));
+        }
+        return Collections.unmodifiableList(copy);
+    }
+
+    @RequiredArgsConstructor
+    private static class Entry {
+        private final List<MemberTeamDto> rows;
+        private final long expiresAt;
+        private final long version;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Stats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+    }
+}
@@ -0,0 +1,76 @@
+package com.practice.querydsl.service;
+
+import com.practice.querydsl.dto.MemberCursor;
+import com.practice.querydsl.dto.MemberCursorPage;
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.dto.SearchPath;
+import com.practice.querydsl.repository.MemberColumnarSnapshot;
+import com.practice.querydsl.repository.MemberJdbcSearch;
+import com.practice.querydsl.repository.MemberJpaRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+// /v1/members 검색 앞단. 컬럼 스냅샷과 결과 캐시는 설정으로 켠다.
+// DB 조회는 동시에 들어온 같은 조건끼리 합치고, 합쳐진 조회의 동시 실행 수는 MemberSearchLimiter 가 제한한다.
+// 커서(/v2), 페이징(/v3) 검색도 같은 limiter 를 거친다.
+@Service
+public class MemberSearchService {
+
+    private final MemberJpaRepository memberJpaRepository;
+    private final MemberJdbcSearch memberJdbcSearch;
+    private final MemberColumnarSnapshot columnarSnapshot;
+    private final MemberSearchResultCache resultCache;
+    private final MemberSearchCoalescer coalescer;
+    private final MemberSearchLimiter limiter;
+    private final boolean resultCacheEnabled;
+
+    public MemberSearchService(MemberJpaRepository memberJpaRepository,
+                               MemberJdbcSearch memberJdbcSearch,
+                               MemberColumnarSnapshot columnarSnapshot,
+                               MemberSearchResultCache resultCache,
+                               MemberSearchCoalescer coalescer,
+                               MemberSearchLimiter limiter,
+                               @Value("${member.search.result-cache.enabled:false}") boolean resultCacheEnabled) {
+        this.memberJpaRepository = memberJpaRepository;
+        this.memberJdbcSearch = memberJdbcSearch;
+        this.columnarSnapshot = columnarSnapshot;
+        this.resultCache = resultCache;
+        this.coalescer = coalescer;
+        this.limiter = limiter;
+        this.resultCacheEnabled = resultCacheEnabled;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        return search(condition, SearchPath.JPA);
+    }
+
+    public MemberCursorPage searchByCursor(MemberSearchCondition condition, MemberCursor.Order order,
+                                           MemberCursor cursor, int size) {
+        return limiter.execute(() -> memberJpaRepository.searchByCursor(condition, order, cursor, size));
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        return limiter.execute(() -> memberJpaRepository.searchPage(condition, pageable));
+    }
+
+    // 두 경로의 결과는 같으므로 결과 캐시와 동시 조회 합치기는 경로와 상관없이 공유한다.
+    public List<MemberTeamDto> search(MemberSearchCondition condition, SearchPath path) {
+        List<MemberTeamDto> fromSnapshot = columnarSnapshot.search(condition); // 처리할 수 없는 조건이면 null
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
+        Supplier<List<MemberTeamDto>> query = path == SearchPath.JDBC
+                ? () -> limiter.execute(() -> memberJdbcSearch.search(condition))
+                : () -> limiter.execute(() -> memberJpaRepository.search(condition));
+        if (!resultCacheEnabled) {
+            return coalescer.search(condition, query);
+        }
+        return resultCache.get(condition, () -> coalescer.search(condition, query));
+    }
+}
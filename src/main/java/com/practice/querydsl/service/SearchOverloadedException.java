@@ -0,0 +1,15 @@
+package com.practice.querydsl.service;
+
+import lombok.Getter;
+
+// 동시 검색 한도를 넘어서 바로 거절된 요청. retryAfterSeconds 뒤에 다시 시도하면 된다.
+@Getter
+public class SearchOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public SearchOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,101 @@
+package com.practice.querydsl.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 두 개의 인메모리 H2 로 라우팅만 확인한다.
+class ReplicaRoutingDataSourceTest {
+
+    ReplicaRoutingDataSource routing = routing(0);
+
+    @AfterEach
+    public void clear() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.clear();
+        TransactionSynchronizationManager.unbindResourceIfPossible(routing);
+    }
+
+    @Test
+    public void readOnlyTransactionGoesToReplica() throws SQLException {
+        begin(true);
+        assertThat(url(routing)).contains("replicaTest");
+    }
+
+    @Test
+    public void readWriteTransactionGoesToPrimary() throws SQLException {
+        begin(false);
+        assertThat(url(routing)).contains("primaryTest");
+    }
+
+    @Test
+    public void readAfterRecentWriteGoesToPrimary() throws SQLException {
+        routing = routing(60_000_000_000L);
+
+        begin(false);
+        url(routing);
+        routing.markWrite(); // DML 실행 (ReplicaWriteInspector)
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        clear();
+
+        begin(true);
+        assertThat(url(routing)).contains("primaryTest");
+        assertThat(routing.getLagFallbacks()).isEqualTo(1);
+    }
+
+    // 읽기만 한 쓰기 트랜잭션은 커밋 시각을 남기지 않는다.
+    @Test
+    public void readWriteWithoutDmlKeepsReplica() throws SQLException {
+        routing = routing(60_000_000_000L);
+
+        begin(false);
+        url(routing);
+        assertThat(TransactionSynchronizationManager.getSynchronizations()).isEmpty();
+        clear();
+
+        begin(true);
+        assertThat(url(routing)).contains("replicaTest");
+        assertThat(routing.getLagFallbacks()).isZero();
+    }
+
+    @Test
+    public void detectWriteStatements() {
+        assertThat(ReplicaWriteInspector.isWrite("\n    insert \n    into member (age) values (?)")).isTrue();
+        assertThat(ReplicaWriteInspector.isWrite("update team_stats set member_count = ?")).isTrue();
+        assertThat(ReplicaWriteInspector.isWrite("DELETE from member")).isTrue();
+        assertThat(ReplicaWriteInspector.isWrite("select m.id from member m for update")).isFalse();
+    }
+
+    private void begin(boolean readOnly) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    }
+
+    private String url(ReplicaRoutingDataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+
+    private ReplicaRoutingDataSource routing(long maxLagNanos) {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:primaryTest", "sa", ""),
+                new DriverManagerDataSource("jdbc:h2:mem:replicaTest", "sa", ""),
+                maxLagNanos);
+        dataSource.afterPropertiesSet();
+        return dataSource;
+    }
+}
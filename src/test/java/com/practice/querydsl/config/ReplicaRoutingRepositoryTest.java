@@ -0,0 +1,59 @@
+package com.practice.querydsl.config;
+
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.repository.MemberJpaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// replica 를 같은 DB 의 별도 풀로 두고 저장소 쿼리가 라우팅을 거쳐 실제로 실행되는지 확인한다.
+@SpringBootTest(properties = {
+        "member.datasource.replica.url=${spring.datasource.url}",
+        "member.datasource.replica.max-lag=1h"
+})
+class ReplicaRoutingRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    ReplicaRoutingDataSource routing;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from TeamStats").executeUpdate();
+        });
+    }
+
+    @Test
+    public void readsGoToReplicaUntilDmlIsCommitted() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // 쓰기 트랜잭션이지만 읽기만 했으므로 이후 읽기는 계속 replica
+        tx.executeWithoutResult(status -> memberJpaRepository.findAll());
+        long replicaReads = routing.getReplicaReads();
+        assertThat(memberJpaRepository.findAll()).isEmpty();
+        assertThat(routing.getReplicaReads()).isEqualTo(replicaReads + 1);
+        assertThat(routing.getLagFallbacks()).isZero();
+
+        // DML 을 커밋하면 max-lag 동안은 primary 에서 읽는다.
+        tx.executeWithoutResult(status -> memberJpaRepository.save(new Member("member1", 10)));
+        assertThat(memberJpaRepository.findAll()).extracting("username").containsExactly("member1");
+        assertThat(routing.getLagFallbacks()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,111 @@
+package com.practice.querydsl.metrics;
+
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import com.practice.querydsl.repository.MemberJpaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Transactional
+class QueryBudgetTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void detectLazyLoading() {
+        assertThatThrownBy(() -> {
+            try (QueryBudget.Scope scope = QueryBudget.open("findAll", 1, true)) {
+                List<Member> members = memberJpaRepository.findAll();
+                for (Member member : members) {
+                    member.getTeam().getName(); // 팀마다 select
+                }
+            }
+        }).isInstanceOf(QueryBudgetExceededException.class)
+                .hasMessageContaining("com.practice.querydsl.model.Team");
+    }
+
+    @Test
+    public void withinBudget() {
+        QueryBudget.Scope scope = QueryBudget.open("findAll", 1, true);
+        try {
+            memberJpaRepository.findAll();
+        } finally {
+            scope.close();
+        }
+        assertThat(scope.getStatements()).isEqualTo(1);
+        assertThat(scope.getLazyLoads()).isEmpty();
+    }
+
+    // 응답이 커밋되기 전이면 예산을 넘는 SQL 에서 바로 실패한다. (에러 응답을 보낼 수 있도록)
+    @Test
+    public void requestScopeFailsBeforeCommit() {
+        QueryBudget.Scope scope = QueryBudget.openRequest("GET /members", 1, true, () -> false);
+        try {
+            memberJpaRepository.findAll();
+            assertThatThrownBy(() -> memberJpaRepository.findAll())
+                    .isInstanceOf(QueryBudgetExceededException.class);
+        } finally {
+            scope.close(); // 이미 실패했으므로 다시 던지지 않는다.
+        }
+    }
+
+    // 커밋된 뒤에는 던져도 클라이언트는 이미 200 을 받았으므로 로그만 남긴다.
+    @Test
+    public void requestScopeOnlyLogsAfterCommit() {
+        QueryBudget.Scope scope = QueryBudget.openRequest("GET /members", 1, true, () -> true);
+        try {
+            memberJpaRepository.findAll();
+            memberJpaRepository.findAll();
+        } finally {
+            scope.close();
+        }
+        assertThat(scope.isExceeded()).isTrue();
+    }
+
+    // 비동기 실행 스레드의 SQL 도 요청 scope 로 센다.
+    @Test
+    public void propagateToAnotherThread() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        QueryBudget.Scope scope = QueryBudget.open("async", 10, false);
+        try {
+            executor.submit(QueryBudget.propagate(() -> memberJpaRepository.findAll())).get(5, TimeUnit.SECONDS);
+        } finally {
+            scope.close();
+            executor.shutdown();
+        }
+        assertThat(scope.getStatements()).isEqualTo(1);
+    }
+}
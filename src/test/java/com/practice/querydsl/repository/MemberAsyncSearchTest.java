@@ -0,0 +1,170 @@
+package com.practice.querydsl.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.practice.querydsl.controller.MemberController;
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// DB 대신 기다리거나 실패하는 쿼리로 타임아웃, 거절, 취소 전파를 확인한다.
+class MemberAsyncSearchTest {
+
+    private static final PlatformTransactionManager NO_TRANSACTION = new PlatformTransactionManager() {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    };
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger contentQueries = new AtomicInteger();
+    private final AtomicInteger countQueries = new AtomicInteger();
+    private MemberAsyncSearch asyncSearch;
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        if (asyncSearch != null) {
+            asyncSearch.shutdown();
+        }
+    }
+
+    @Test
+    public void timeoutIsServiceUnavailable() throws Exception {
+        asyncSearch = asyncSearch(this::fullPage, () -> 10L, 2, 10);
+        MockMvc mockMvc = mockMvc(Duration.ofMillis(100));
+
+        MvcResult started = mockMvc.perform(get("/v4/members").param("size", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void rejectionIsServiceUnavailable() throws Exception {
+        asyncSearch = asyncSearch(this::fullPage, () -> 10L, 1, 1);
+        // content 가 스레드를, count 가 큐를 채운다.
+        asyncSearch.searchPage(new MemberSearchCondition(), PageRequest.of(0, 2), Duration.ofSeconds(10));
+        MockMvc mockMvc = mockMvc(Duration.ofSeconds(10));
+
+        MvcResult started = mockMvc.perform(get("/v4/members").param("size", "2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isServiceUnavailable());
+    }
+
+    // 스레드가 하나라 content 가 실행되는 동안 count 는 큐에서 기다린다. content 가 실패하면 count 는 실행되지 않는다.
+    @Test
+    public void failureCancelsSiblingQuery() throws Exception {
+        asyncSearch = asyncSearch(() -> {
+            fullPage();
+            throw new IllegalStateException("content failed");
+        }, () -> 10L, 1, 10);
+
+        CompletableFuture<Page<MemberTeamDto>> first =
+                asyncSearch.searchPage(new MemberSearchCondition(), PageRequest.of(0, 2), Duration.ofSeconds(10));
+        CompletableFuture<Page<MemberTeamDto>> second =
+                asyncSearch.searchPage(new MemberSearchCondition(), PageRequest.of(0, 2), Duration.ofSeconds(10));
+        release.countDown();
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasRootCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).hasRootCauseInstanceOf(IllegalStateException.class);
+        assertThat(contentQueries.get()).isEqualTo(2);
+        assertThat(countQueries.get()).isZero(); // 두 번째 content 가 실행됐으니 그 앞의 취소된 count 는 건너뛰었다.
+    }
+
+    // 큐에서 기다리다 마감이 지나도 500 이 아니라 TimeoutException(503)으로 끝나고, 쿼리는 실행되지 않는다.
+    @Test
+    public void deadlinePassedInQueue() throws Exception {
+        asyncSearch = asyncSearch(this::fullPage, () -> 10L, 1, 10);
+        CompletableFuture<Page<MemberTeamDto>> blocking =
+                asyncSearch.searchPage(new MemberSearchCondition(), PageRequest.of(0, 2), Duration.ofSeconds(10));
+        CompletableFuture<Page<MemberTeamDto>> queued =
+                asyncSearch.searchPage(new MemberSearchCondition(), PageRequest.of(0, 2), Duration.ofMillis(50));
+
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        release.countDown();
+        assertThat(blocking.get(5, TimeUnit.SECONDS).getTotalElements()).isEqualTo(10);
+        assertThat(contentQueries.get()).isEqualTo(1);
+    }
+
+    private MemberAsyncSearch asyncSearch(Supplier<List<MemberTeamDto>> content, LongSupplier count,
+                                          int threads, int queueCapacity) {
+        MemberJpaRepository repository = new MemberJpaRepository(null, null, null, null, null) {
+            @Override
+            public List<MemberTeamDto> searchPageContent(MemberSearchCondition condition, Pageable pageable,
+                                                         int timeoutMillis) {
+                contentQueries.incrementAndGet();
+                return content.get();
+            }
+
+            @Override
+            public long searchCount(MemberSearchCondition condition, int timeoutMillis) {
+                countQueries.incrementAndGet();
+                return count.getAsLong();
+            }
+        };
+        return new MemberAsyncSearch(repository, NO_TRANSACTION, threads, queueCapacity);
+    }
+
+    private MockMvc mockMvc(Duration timeout) {
+        MemberController controller = new MemberController(null, null, asyncSearch, null, new ObjectMapper());
+        ReflectionTestUtils.setField(controller, "asyncSearchTimeout", timeout);
+        return MockMvcBuilders.standaloneSetup(controller)
+                .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+                .build();
+    }
+
+    // release 될 때까지 기다렸다가 size 2 페이지를 꽉 채워 돌려준다. (count 가 필요하다)
+    private List<MemberTeamDto> fullPage() {
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Arrays.asList(new MemberTeamDto(1L, "member1", 10, null, null),
+                new MemberTeamDto(2L, "member2", 20, null, null));
+    }
+}
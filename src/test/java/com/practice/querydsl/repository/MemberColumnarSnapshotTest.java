@@ -0,0 +1,168 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋된 변경만 반영되므로 롤백 테스트 대신 직접 정리한다.
+@SpringBootTest(properties = "member.search.columnar.enabled=true")
+class MemberColumnarSnapshotTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberColumnarSnapshot snapshot;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+            em.createQuery("delete from TeamStats").executeUpdate();
+        });
+        snapshot.rebuild();
+    }
+
+    @Test
+    public void sameResultAsDatabase() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            for (int i = 0; i < 50; i++) {
+                em.persist(new Member("member" + i, i % 40, i % 2 == 0 ? teamA : teamB));
+            }
+            em.persist(new Member("noTeam", 20));
+        });
+        snapshot.rebuild();
+
+        assertSameAsDatabase(condition(null, 10, 20));
+        assertSameAsDatabase(condition("teamA", 35, null));
+        assertSameAsDatabase(condition("teamB", null, 5));
+        assertSameAsDatabase(condition(null, null, null));
+        assertSameAsDatabase(condition("none", null, null));
+        assertSameAsDatabase(condition(null, 30, 10));
+
+        MemberSearchCondition byUsername = new MemberSearchCondition();
+        byUsername.setUsername("member1");
+        assertThat(snapshot.search(byUsername)).isNull();
+    }
+
+    @Test
+    public void committedChangesAreVisible() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long[] ids = new Long[2];
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            Member kim = new Member("kim", 10, teamA);
+            Member lee = new Member("lee", 20, teamA);
+            em.persist(kim);
+            em.persist(lee);
+            ids[0] = kim.getId();
+            ids[1] = lee.getId();
+        });
+        snapshot.rebuild();
+
+        tx.executeWithoutResult(status -> {
+            Team teamB = new Team("teamB");
+            em.persist(teamB);
+            em.find(Member.class, ids[0]).setAge(30);
+            em.remove(em.find(Member.class, ids[1]));
+            em.persist(new Member("park", 25, teamB));
+        });
+        assertThat(snapshot.stats().getOverlayRows()).isEqualTo(3);
+        assertSameAsDatabase(condition(null, 20, null));
+        assertSameAsDatabase(condition("teamB", null, null));
+
+        snapshot.merge();
+        assertThat(snapshot.stats().getOverlayRows()).isZero();
+        assertSameAsDatabase(condition(null, 20, null));
+        assertThat(snapshot.search(condition(null, 20, null))).extracting("username")
+                .containsExactly("park", "kim"); // 나이순
+    }
+
+    @Test
+    public void bulkUpdateFallsBackUntilRebuilt() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> em.persist(new Member("kim", 10)));
+        snapshot.rebuild();
+        assertThat(snapshot.search(condition(null, 10, null))).hasSize(1);
+
+        tx.executeWithoutResult(status -> memberJpaRepository.bulkAddAge(condition(null, null, null), 5));
+        assertThat(snapshot.search(condition(null, 10, null))).isNull();
+
+        snapshot.refresh();
+        assertThat(snapshot.search(condition(null, 15, 15))).extracting("username").containsExactly("kim");
+    }
+
+    @Test
+    public void teamRenameIsVisible() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long teamId = tx.execute(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            em.persist(new Member("kim", 10, teamA));
+            return teamA.getId();
+        });
+        snapshot.rebuild();
+
+        tx.executeWithoutResult(status -> em.find(Team.class, teamId).setName("teamB"));
+        assertThat(snapshot.search(condition("teamA", null, null))).isEmpty();
+        assertSameAsDatabase(condition("teamB", null, null));
+    }
+
+    // 쓰기 트랜잭션 안에서는 아직 커밋하지 않은 자기 변경을 봐야 하므로 DB 로 검색하게 한다.
+    @Test
+    public void readWriteTransactionFallsBack() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> em.persist(new Member("kim", 10)));
+        snapshot.rebuild();
+
+        tx.executeWithoutResult(status -> {
+            em.persist(new Member("lee", 10));
+            assertThat(snapshot.search(condition(null, 10, null))).isNull();
+        });
+
+        TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        assertThat(readOnlyTx.execute(status -> snapshot.search(condition(null, 10, null))))
+                .extracting("username").containsExactly("kim", "lee");
+    }
+
+    private void assertSameAsDatabase(MemberSearchCondition condition) {
+        List<MemberTeamDto> fromSnapshot = snapshot.search(condition);
+        assertThat(fromSnapshot).isNotNull();
+        assertThat(fromSnapshot).containsExactlyInAnyOrderElementsOf(
+                new TransactionTemplate(transactionManager).execute(status -> memberJpaRepository.search(condition)));
+    }
+
+    private MemberSearchCondition condition(String teamName, Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+}
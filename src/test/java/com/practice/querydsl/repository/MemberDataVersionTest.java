@@ -0,0 +1,116 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋 이후에 버전이 오르는지 봐야 하므로 롤백 테스트 대신 직접 정리한다.
+@SpringBootTest
+class MemberDataVersionTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberDataVersion dataVersion;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+            em.createQuery("delete from TeamStats").executeUpdate();
+        });
+    }
+
+    @Test
+    public void bumpOncePerCommittedWrite() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long start = dataVersion.current();
+
+        Long[] ids = new Long[2];
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            Member member = new Member("member1", 10, teamA);
+            memberJpaRepository.save(member);
+            ids[0] = member.getId();
+            assertThat(dataVersion.current()).isEqualTo(start); // 커밋 전에는 그대로
+        });
+        assertThat(dataVersion.current()).isEqualTo(start + 1);
+
+        tx.executeWithoutResult(status -> {
+            Team teamB = new Team("teamB");
+            em.persist(teamB);
+            ids[1] = teamB.getId();
+        });
+        assertThat(dataVersion.current()).isEqualTo(start + 2);
+
+        tx.executeWithoutResult(status -> memberJpaRepository.changeTeam(
+                em.find(Member.class, ids[0]), em.find(Team.class, ids[1])));
+        assertThat(dataVersion.current()).isEqualTo(start + 3);
+
+        tx.executeWithoutResult(status -> em.find(Member.class, ids[0]).setAge(20)); // 저장소를 거치지 않은 변경
+        assertThat(dataVersion.current()).isEqualTo(start + 4);
+
+        tx.executeWithoutResult(status -> {
+            memberJpaRepository.save(new Member("member2", 30));
+            status.setRollbackOnly();
+        });
+        assertThat(dataVersion.current()).isEqualTo(start + 4);
+
+        tx.executeWithoutResult(status -> memberJpaRepository.bulkAddAge(new MemberSearchCondition(), 1));
+        assertThat(dataVersion.current()).isEqualTo(start + 5);
+
+        tx.executeWithoutResult(status -> memberJpaRepository.findAll());
+        assertThat(dataVersion.current()).isEqualTo(start + 5);
+    }
+
+    @Test
+    public void etagDependsOnVersionAndCondition() {
+        MemberSearchCondition teamA = new MemberSearchCondition();
+        teamA.setTeamName("teamA");
+        MemberSearchCondition teamB = new MemberSearchCondition();
+        teamB.setTeamName("teamB");
+
+        String etag = dataVersion.etag(teamA);
+        assertThat(dataVersion.etag(teamA.copy())).isEqualTo(etag);
+        assertThat(dataVersion.etag(teamB)).isNotEqualTo(etag);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> em.persist(new Team("teamC")));
+        assertThat(dataVersion.etag(teamA)).isNotEqualTo(etag);
+    }
+
+    // 다른 인스턴스의 커밋은 이 인스턴스의 이벤트 없이 공유 행만 올린다.
+    @Test
+    public void seeWritesFromOtherInstances() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        long start = dataVersion.current();
+        String etag = dataVersion.etag(condition);
+
+        jdbcTemplate.update("update data_version set version = version + 1 where name = 'member'");
+
+        assertThat(dataVersion.current()).isEqualTo(start + 1);
+        assertThat(dataVersion.etag(condition)).isNotEqualTo(etag);
+    }
+}
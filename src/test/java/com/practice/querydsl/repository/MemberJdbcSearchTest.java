@@ -0,0 +1,78 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.UsernameMatch;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberJdbcSearchTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJdbcSearch memberJdbcSearch;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("Member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("noTeam", 50)); // 아직 flush 전이어도 보여야 한다.
+    }
+
+    @Test
+    public void sameResultAsJpaSearch() {
+        assertSame(condition(null, null, null, null));
+        assertSame(condition("member1", null, null, null));
+        assertSame(condition(null, "teamB", null, null));
+        assertSame(condition(null, null, 20, 40));
+        assertSame(condition(null, "teamA", 15, null));
+
+        MemberSearchCondition prefix = condition("member", null, null, 30);
+        prefix.setUsernameMatch(UsernameMatch.PREFIX);
+        prefix.setIgnoreCase(true);
+        assertSame(prefix);
+
+        assertThat(memberJdbcSearch.search(condition(null, null, 50, null)))
+                .singleElement()
+                .satisfies(row -> {
+                    assertThat(row.getUsername()).isEqualTo("noTeam");
+                    assertThat(row.getTeamId()).isNull();
+                    assertThat(row.getTeamName()).isNull();
+                });
+    }
+
+    private void assertSame(MemberSearchCondition condition) {
+        assertThat(memberJdbcSearch.search(condition))
+                .containsExactlyInAnyOrderElementsOf(memberJpaRepository.search(condition));
+    }
+
+    private MemberSearchCondition condition(String username, String teamName, Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return condition;
+    }
+}
@@ -1,16 +1,25 @@
 package com.practice.querydsl.repository;
 
+import com.practice.querydsl.dto.MemberCursor;
+import com.practice.querydsl.dto.MemberCursorPage;
 import com.practice.querydsl.dto.MemberSearchCondition;
 import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.dto.UsernameMatch;
 import com.practice.querydsl.model.Member;
 import com.practice.querydsl.model.Team;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManager;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -26,6 +35,12 @@ class MemberJpaRepositoryTest {
     @Autowired
     MemberJpaRepository memberJpaRepository;
 
+    @Autowired
+    MemberSearchQueryCache searchQueryCache;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
 
     @Test
     public void basicTest(){
@@ -87,7 +102,227 @@ class MemberJpaRepositoryTest {
         assertThat(result).extracting("username").containsExactly("member4");
     }
 
+    @Test
+    public void searchByCursorTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        Member member1 = new Member("member1", 30, teamA);
+        Member member2 = new Member("member2", 10, teamA);
+        Member member3 = new Member("member3", 30, teamA);
+        Member member4 = new Member("member4", 20, teamA);
+
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        MemberCursorPage page1 = memberJpaRepository.searchByCursor(condition, MemberCursor.Order.AGE, null, 3);
+        assertThat(page1.getContent()).extracting("username").containsExactly("member2", "member4", "member1");
+        assertThat(page1.isHasNext()).isTrue();
+
+        MemberCursor cursor = MemberCursor.decode(page1.getNextCursor());
+        MemberCursorPage page2 = memberJpaRepository.searchByCursor(condition, MemberCursor.Order.AGE, cursor, 3);
+        assertThat(page2.getContent()).extracting("username").containsExactly("member3");
+        assertThat(page2.isHasNext()).isFalse();
+        assertThat(page2.getNextCursor()).isNull();
+
+        assertThatThrownBy(() -> memberJpaRepository.searchByCursor(condition, MemberCursor.Order.ID, cursor, 3))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void searchPageTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30, teamB);
+        Member member4 = new Member("member4", 40, teamB);
+
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.persist(member4);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        Page<MemberTeamDto> result = memberJpaRepository.searchPage(condition, PageRequest.of(0, 3));
+        assertThat(result.getTotalElements()).isEqualTo(4);
+        assertThat(result.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+
+        condition.setTeamName("teamB");
+        Page<MemberTeamDto> teamBResult = memberJpaRepository.searchPage(condition, PageRequest.of(0, 3));
+        assertThat(teamBResult.getTotalElements()).isEqualTo(2);
+        assertThat(teamBResult.getContent()).extracting("username").containsExactly("member3", "member4");
+    }
+
+    @Test
+    public void searchEachTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(5);
+
+        List<String> usernames = new ArrayList<>();
+        long rows = memberJpaRepository.searchEach(condition, 2, row -> usernames.add(row.getUsername()));
+
+        assertThat(rows).isEqualTo(5);
+        assertThat(usernames).containsExactlyInAnyOrder("member5", "member6", "member7", "member8", "member9");
+    }
+
+    @Test
+    public void searchUsesCachedTemplateTest() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(15);
+        condition.setAgeLoe(35);
+
+        long missesBefore = searchQueryCache.stats().getMisses();
+        long hitsBefore = searchQueryCache.stats().getHits();
+        List<MemberTeamDto> first = memberJpaRepository.search(condition);
+        List<MemberTeamDto> second = memberJpaRepository.search(condition);
+
+        assertThat(first).extracting("username").containsExactlyInAnyOrder("member2", "member3");
+        assertThat(second).isEqualTo(first);
+        assertThat(first).containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(condition));
+        assertThat(searchQueryCache.stats().getMisses() - missesBefore).isLessThanOrEqualTo(1);
+        assertThat(searchQueryCache.stats().getHits() - hitsBefore).isGreaterThanOrEqualTo(1);
+
+        // 템플릿과 Querydsl 조건이 같은 의미인지
+        condition.setAgeLoe(null);
+        condition.setTeamName("teamB");
+        assertThat(memberJpaRepository.search(condition))
+                .containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(condition));
+        condition.setAgeGoe(null);
+        condition.setUsername("member3");
+        assertThat(memberJpaRepository.search(condition))
+                .containsExactlyInAnyOrderElementsOf(memberJpaRepository.searchByBuilder(condition));
+    }
+
+    @Test
+    public void readOnlyTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        Member member = new Member("member1", 10, teamA);
+        memberJpaRepository.save(member);
+        em.flush();
+        em.clear();
+
+        Member findMember = memberJpaRepository.findByUsername_QueryDsl_ReadOnly("member1").get(0);
+        findMember.setAge(99); // 읽기 전용이라 dirty checking 대상이 아니다.
+        em.flush();
+        em.clear();
+
+        assertThat(memberJpaRepository.findById(member.getId()).get().getAge()).isEqualTo(10);
+        assertThat(memberJpaRepository.findAll_ReadOnly()).extracting("username").containsExactly("member1");
+        assertThat(memberJpaRepository.findALl_QueryDsl_ReadOnly()).extracting("username").containsExactly("member1");
+    }
+
+    @Test
+    public void usernamePrefixAndContainsTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        memberJpaRepository.save(new Member("kim_minsu", 10, teamA));
+        memberJpaRepository.save(new Member("lee_minji", 20, teamA));
+        memberJpaRepository.save(new Member("kimchi", 30, teamA));
+        memberJpaRepository.save(new Member("100%_real", 40, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("kim");
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+        assertThat(memberJpaRepository.search(condition)).extracting("username")
+                .containsExactlyInAnyOrder("kim_minsu", "kimchi");
+        assertThat(memberJpaRepository.searchByBuilder(condition)).extracting("username")
+                .containsExactlyInAnyOrder("kim_minsu", "kimchi");
+
+        condition.setUsername("min");
+        condition.setUsernameMatch(UsernameMatch.CONTAINS);
+        assertThat(memberJpaRepository.search(condition)).extracting("username")
+                .containsExactlyInAnyOrder("kim_minsu", "lee_minji");
+
+        condition.setUsername("0%_");
+        assertThat(memberJpaRepository.search(condition)).extracting("username")
+                .containsExactly("100%_real");
+        assertThat(memberJpaRepository.searchByBuilder(condition)).extracting("username")
+                .containsExactly("100%_real");
+    }
+
+    @Test
+    public void usernameIgnoreCaseTest() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+
+        memberJpaRepository.save(new Member("Kim", 10, teamA));
+        memberJpaRepository.save(new Member("KIMCHI", 20, teamA));
+        Member lee = new Member("lee", 30, teamA);
+        memberJpaRepository.save(lee);
+        lee.setUsername("KimLee"); // 변경 시에도 소문자 컬럼이 함께 바뀐다
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("kim");
+        assertThat(memberJpaRepository.search(condition)).isEmpty();
+
+        condition.setIgnoreCase(true);
+        assertThat(memberJpaRepository.search(condition)).extracting("username")
+                .containsExactly("Kim");
+        assertThat(memberJpaRepository.searchByBuilder(condition)).extracting("username")
+                .containsExactly("Kim");
+
+        condition.setUsernameMatch(UsernameMatch.PREFIX);
+        assertThat(memberJpaRepository.search(condition)).extracting("username")
+                .containsExactlyInAnyOrder("Kim", "KIMCHI", "KimLee");
+        assertThat(memberJpaRepository.searchByBuilder(condition)).extracting("username")
+                .containsExactlyInAnyOrder("Kim", "KIMCHI", "KimLee");
+    }
 
+    // StatelessSession 은 자체 커넥션을 쓰므로 데이터를 커밋해두고 읽는다.
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void findAllWithTeam_StatelessTest() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            memberJpaRepository.save(new Member("member1", 10, teamA));
+            memberJpaRepository.save(new Member("member2", 20));
+        });
+        try {
+            List<Member> members = memberJpaRepository.findAllWithTeam_Stateless();
 
+            assertThat(members).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+            // 지연 로딩이 안 되지만 fetch join 으로 팀이 채워져 있다.
+            assertThat(members).filteredOn(m -> m.getTeam() != null)
+                    .extracting(m -> m.getTeam().getName())
+                    .containsExactly("teamA");
+        } finally {
+            tx.executeWithoutResult(status -> {
+                em.createQuery("delete from Member").executeUpdate();
+                em.createQuery("delete from Team").executeUpdate();
+                em.createQuery("delete from TeamStats").executeUpdate();
+            });
+        }
+    }
 
-}
\ No newline at end of file
+}
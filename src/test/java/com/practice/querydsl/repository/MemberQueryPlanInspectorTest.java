@@ -0,0 +1,63 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.QueryPlanDto;
+import com.practice.querydsl.dto.UsernameMatch;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class MemberQueryPlanInspectorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberQueryPlanInspector queryPlanInspector;
+
+    @Test
+    public void explainUsesIndexes() {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("member1");
+
+        QueryPlanDto result = queryPlanInspector.explain(condition);
+
+        assertThat(result.getSql()).contains("username");
+        assertThat(String.join("\n", result.getPlan())).containsIgnoringCase("idx_member_username");
+    }
+
+    // CONTAINS 는 search 가 붙이는 후보 id 조건까지 들어간 SQL 로 EXPLAIN 한다.
+    @Test
+    public void explainContainsWithCandidateIds() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        memberJpaRepository.save(new Member("kim_minsu", 10, teamA));
+        memberJpaRepository.save(new Member("lee_minji", 20, teamA));
+        em.flush();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("min");
+        condition.setUsernameMatch(UsernameMatch.CONTAINS);
+
+        QueryPlanDto result = queryPlanInspector.explain(condition);
+
+        assertThat(result.getSql()).containsIgnoringCase("id in (");
+        // username 1개 + 후보 id 자리(2의 거듭제곱). 색인에는 다른 테스트에서 롤백된 id 가 남아 있을 수 있다.
+        int idSlots = (int) result.getSql().chars().filter(c -> c == '?').count() - 1;
+        assertThat(idSlots).isGreaterThanOrEqualTo(2);
+        assertThat(Integer.bitCount(idSlots)).isEqualTo(1);
+        assertThat(result.getPlan()).isNotEmpty();
+    }
+}
@@ -0,0 +1,91 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.TeamMembersDto;
+import com.practice.querydsl.metrics.QueryBudget;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamQueryRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+
+    @Test
+    public void findTeamsWithMembers() {
+        for (int i = 0; i < 5; i++) {
+            Team team = new Team("team" + i);
+            em.persist(team);
+            for (int j = 0; j < 3; j++) {
+                em.persist(new Member("member" + i + "_" + j, j, team));
+            }
+        }
+        em.flush();
+        em.clear();
+
+        Page<TeamMembersDto> result;
+        try (QueryBudget.Scope scope = QueryBudget.open("teams", 3, true)) {
+            result = teamQueryRepository.findTeamsWithMembers(PageRequest.of(0, 2));
+        }
+
+        assertThat(result.getTotalElements()).isEqualTo(5);
+        assertThat(result.getContent()).extracting("name").containsExactly("team0", "team1");
+        assertThat(result.getContent().get(0).getMembers()).extracting("username")
+                .containsExactly("member0_0", "member0_1", "member0_2");
+    }
+
+    // 쓰기 트랜잭션 안에서는 쿼리 캐시가 쓰이지 않으므로 커밋한 뒤 각자 다른 트랜잭션에서 조회한다.
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void findByName() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long teamId = tx.execute(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            return teamA.getId();
+        });
+        try {
+            assertThat(tx.execute(status -> teamQueryRepository.findByName("teamA")))
+                    .hasValueSatisfying(team -> assertThat(team.getId()).isEqualTo(teamId));
+            assertThat(tx.execute(status -> teamQueryRepository.findByName("none"))).isEmpty();
+
+            Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+            statistics.clear();
+            assertThat(tx.execute(status -> teamQueryRepository.findByName("teamA")))
+                    .hasValueSatisfying(team -> assertThat(team.getId()).isEqualTo(teamId));
+
+            assertThat(statistics.getPrepareStatementCount()).isZero(); // DB 에 가지 않았다.
+            assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+            assertThat(statistics.getCacheRegionStatistics("team-by-name").getHitCount()).isEqualTo(1);
+            assertThat(statistics.getDomainDataRegionStatistics(Team.class.getName()).getHitCount()).isEqualTo(1);
+        } finally {
+            tx.executeWithoutResult(status -> em.createQuery("delete from Team").executeUpdate());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.TeamStatsDto;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋 시점에 반영되므로 @Transactional 롤백 테스트 대신 트랜잭션을 직접 커밋한다.
+@SpringBootTest
+class TeamStatsMaintainerTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    TeamQueryRepository teamQueryRepository;
+
+    @Autowired
+    TeamStatsMaintainer teamStatsMaintainer;
+
+    @AfterEach
+    public void cleanUp() {
+        tx().executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+            em.createQuery("delete from TeamStats").executeUpdate();
+        });
+    }
+
+    @Test
+    public void maintainIncrementally() {
+        Long[] ids = tx().execute(status -> {
+            Team teamA = new Team("statsA");
+            Team teamB = new Team("statsB");
+            em.persist(teamA);
+            em.persist(teamB);
+            memberJpaRepository.save(new Member("member1", 10, teamA));
+            memberJpaRepository.save(new Member("member2", 20, teamA));
+            Member member3 = new Member("member3", 30, teamB);
+            memberJpaRepository.save(member3);
+            return new Long[]{teamA.getId(), member3.getId()};
+        });
+
+        assertThat(stats("statsA").getMemberCount()).isEqualTo(2);
+        assertThat(stats("statsA").getAverageAge()).isEqualTo(15.0);
+        assertThat(stats("statsB").getMaxAge()).isEqualTo(30);
+
+        // changeTeam
+        tx().executeWithoutResult(status -> {
+            Member member3 = em.find(Member.class, ids[1]);
+            member3.changeTeam(em.find(Team.class, ids[0]));
+        });
+
+        assertThat(stats("statsA").getMemberCount()).isEqualTo(3);
+        assertThat(stats("statsA").getMaxAge()).isEqualTo(30);
+        assertThat(stats("statsB").getMemberCount()).isEqualTo(0);
+        assertThat(stats("statsB").getMaxAge()).isNull();
+
+        // 벌크 삭제
+        tx().executeWithoutResult(status -> {
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setAgeGoe(25);
+            memberJpaRepository.bulkDelete(condition);
+        });
+
+        assertThat(stats("statsA").getMemberCount()).isEqualTo(2);
+        assertThat(stats("statsA").getMaxAge()).isEqualTo(20);
+
+        teamStatsMaintainer.rebuildAll();
+        assertThat(stats("statsA").getMemberCount()).isEqualTo(2);
+        assertThat(stats("statsA").getMinAge()).isEqualTo(10);
+    }
+
+    // 이전 상태를 모르는 update(준영속 재연결)는 이전 팀도 다시 집계되어야 한다.
+    @Test
+    public void reattachedUpdateRecomputesOldTeam() {
+        Long[] ids = tx().execute(status -> {
+            Team teamA = new Team("statsA");
+            Team teamB = new Team("statsB");
+            em.persist(teamA);
+            em.persist(teamB);
+            Member member = new Member("member1", 10, teamA);
+            memberJpaRepository.save(member);
+            memberJpaRepository.save(new Member("member2", 20, teamA));
+            return new Long[]{member.getId(), teamB.getId()};
+        });
+
+        Member detached = tx().execute(status -> em.find(Member.class, ids[0]));
+        tx().executeWithoutResult(status -> {
+            detached.setTeam(em.find(Team.class, ids[1]));
+            em.unwrap(Session.class).update(detached);
+        });
+
+        assertThat(stats("statsA").getMemberCount()).isEqualTo(1);
+        assertThat(stats("statsA").getMinAge()).isEqualTo(20);
+        assertThat(stats("statsB").getMemberCount()).isEqualTo(1);
+    }
+
+    // 요약 행이 없는 팀에 두 트랜잭션이 동시에 첫 회원을 넣어도 둘 다 커밋되고 둘 다 집계된다.
+    @Test
+    public void concurrentFirstMembersOfTeam() throws Exception {
+        Long teamId = tx().execute(status -> {
+            Team team = new Team("statsA");
+            em.persist(team);
+            return team.getId();
+        });
+
+        CyclicBarrier flushed = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> addMember(teamId, "member1", 10, flushed));
+            Future<?> second = executor.submit(() -> addMember(teamId, "member2", 20, flushed));
+            first.get(30, TimeUnit.SECONDS);
+            second.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(stats("statsA").getMemberCount()).isEqualTo(2);
+        assertThat(stats("statsA").getMaxAge()).isEqualTo(20);
+    }
+
+    private void addMember(Long teamId, String username, int age, CyclicBarrier flushed) {
+        tx().executeWithoutResult(status -> {
+            memberJpaRepository.save(new Member(username, age, em.find(Team.class, teamId)));
+            em.flush();
+            try {
+                flushed.await(10, TimeUnit.SECONDS); // 둘 다 flush 한 뒤 커밋(요약 행 추가)으로
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private TeamStatsDto stats(String teamName) {
+        return teamQueryRepository.findTeamStats().stream()
+                .filter(stats -> stats.getTeamName().equals(teamName))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+    }
+
+    private TransactionTemplate tx() {
+        return new TransactionTemplate(transactionManager);
+    }
+}
@@ -0,0 +1,68 @@
+package com.practice.querydsl.repository;
+
+import com.practice.querydsl.model.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 재구성 스캔과 다른 트랜잭션의 커밋 순서를 맞춰야 해서 트랜잭션을 직접 커밋한다.
+@SpringBootTest
+class UsernameTrigramIndexTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    UsernameTrigramIndex usernameTrigramIndex;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                em.createQuery("delete from Member").executeUpdate());
+    }
+
+    // 재구성 전에 flush 되고 스캔 이후에 커밋된 회원도 새 색인에 남아야 한다.
+    @Test
+    public void flushedBeforeRebuildCommittedAfterScan() throws Exception {
+        CountDownLatch flushed = new CountDownLatch(1);
+        CountDownLatch rebuilt = new CountDownLatch(1);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> memberId = writer.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+                Member member = new Member("qzxv_racer", 10);
+                em.persist(member);
+                em.flush();
+                flushed.countDown();
+                try {
+                    rebuilt.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return member.getId();
+            }));
+            assertThat(flushed.await(10, TimeUnit.SECONDS)).isTrue();
+            usernameTrigramIndex.rebuild(); // 아직 커밋 전이라 스캔에는 안 보인다.
+            rebuilt.countDown();
+
+            assertThat(usernameTrigramIndex.candidates("qzxv_r")).containsExactly(memberId.get(10, TimeUnit.SECONDS));
+        } finally {
+            rebuilt.countDown();
+            writer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.practice.querydsl.service;
+
+import com.practice.querydsl.dto.BulkOperationResult;
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 청크마다 커밋하므로 롤백 테스트 대신 직접 정리한다.
+@SpringBootTest
+class MemberBulkServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberBulkService memberBulkService;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+            em.createQuery("delete from TeamStats").executeUpdate();
+        });
+    }
+
+    @Test
+    public void addAgeInChunksAndEvictOnlyAffected() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team team = new Team("bulkTeam");
+            em.persist(team);
+            for (int i = 0; i < 10; i++) {
+                em.persist(new Member("bulk" + i, i, team));
+            }
+        });
+
+        TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+        readOnlyTx.executeWithoutResult(status -> {
+            Member young = em.createQuery("select m from Member m where m.username = 'bulk1'", Member.class)
+                    .getSingleResult();
+            Member old = em.createQuery("select m from Member m where m.username = 'bulk8'", Member.class)
+                    .getSingleResult();
+
+            MemberSearchCondition condition = new MemberSearchCondition();
+            condition.setAgeGoe(5);
+            BulkOperationResult result = memberBulkService.addAge(condition, 100, 2, Duration.ZERO);
+
+            assertThat(result.getTotalRows()).isEqualTo(5);
+            assertThat(result.getRowsPerChunk()).containsExactly(2L, 2L, 1L);
+            assertThat(result.getEvicted()).isEqualTo(1);
+            assertThat(em.contains(young)).isTrue();
+            assertThat(em.contains(old)).isFalse();
+            assertThat(em.find(Member.class, old.getId()).getAge()).isEqualTo(108);
+        });
+    }
+
+    @Test
+    public void rejectEmptyConditionAndReadWriteTransaction() {
+        tx().executeWithoutResult(status -> em.persist(new Member("bulk", 10)));
+
+        assertThatThrownBy(() -> memberBulkService.delete(new MemberSearchCondition()))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(0);
+        assertThatThrownBy(() -> tx().executeWithoutResult(status -> memberBulkService.delete(condition)))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(tx().execute(status -> em.createQuery("select count(m) from Member m", Long.class)
+                .getSingleResult())).isEqualTo(1);
+    }
+
+    private TransactionTemplate tx() {
+        return new TransactionTemplate(transactionManager);
+    }
+}
@@ -0,0 +1,108 @@
+package com.practice.querydsl.service;
+
+import com.practice.querydsl.dto.MemberExportStatus;
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.model.Member;
+import com.practice.querydsl.model.Team;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 작업 스레드가 별도 트랜잭션으로 읽으므로 데이터를 커밋하고 직접 정리한다.
+@SpringBootTest(properties = "member.export.buffer-size=64") // 버퍼를 여러 번 비우도록 작게
+class MemberExportServiceTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MemberExportService memberExportService;
+
+    @AfterEach
+    public void cleanUp() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+            em.createQuery("delete from TeamStats").executeUpdate();
+        });
+    }
+
+    @Test
+    public void exportToCsv() throws Exception {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Team team = new Team("exportTeam");
+            em.persist(team);
+            for (int i = 0; i < 20; i++) {
+                em.persist(new Member("export" + i, i, team));
+            }
+            em.persist(new Member("kim, \"the\" 회원", 50));
+        });
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(10);
+        MemberExportStatus started = memberExportService.start(condition);
+        MemberExportStatus finished = await(started.getId());
+
+        assertThat(finished.getState()).isEqualTo(MemberExportStatus.State.COMPLETED);
+        assertThat(finished.getRowsWritten()).isEqualTo(11);
+        assertThat(finished.getTotalRows()).isEqualTo(11);
+        assertThat(finished.getProgress()).isEqualTo(1.0);
+
+        Path file = memberExportService.file(started.getId()).get();
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(12);
+        assertThat(lines.get(0)).isEqualTo("member_id,username,age,team_id,team_name");
+        assertThat(lines).anyMatch(line -> line.contains(",export15,15,") && line.endsWith(",exportTeam"));
+        assertThat(lines).anyMatch(line -> line.endsWith(",\"kim, \"\"the\"\" 회원\",50,,"));
+        assertThat(Files.size(file)).isEqualTo(finished.getBytesWritten());
+    }
+
+    @Test
+    public void unknownAndUnfinishedExport() {
+        assertThat(memberExportService.status("none")).isEmpty();
+        assertThat(memberExportService.file("none")).isEmpty();
+        assertThat(memberExportService.cancel("none")).isEmpty();
+
+        MemberExportStatus started = memberExportService.start(new MemberSearchCondition());
+        MemberExportStatus cancelled = memberExportService.cancel(started.getId()).get();
+        // 취소보다 먼저 끝났으면 COMPLETED, 아니면 행이 없어도 반드시 CANCELLED 로 끝난다.
+        if (cancelled.getState() != MemberExportStatus.State.COMPLETED) {
+            assertThat(await(started.getId()).getState()).isEqualTo(MemberExportStatus.State.CANCELLED);
+            assertThatThrownBy(() -> memberExportService.file(started.getId()))
+                    .isInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    private MemberExportStatus await(String id) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            MemberExportStatus status = memberExportService.status(id).get();
+            if (status.getState() != MemberExportStatus.State.QUEUED
+                    && status.getState() != MemberExportStatus.State.RUNNING) {
+                return status;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new AssertionError("export " + id + " did not finish");
+    }
+}
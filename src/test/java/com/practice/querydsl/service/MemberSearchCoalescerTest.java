@@ -0,0 +1,149 @@
+package com.practice.querydsl.service;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.repository.MemberChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberSearchCoalescerTest {
+
+    @Test
+    public void concurrentIdenticalSearchesShareOneQuery() throws Exception {
+        MemberSearchCoalescer coalescer = new MemberSearchCoalescer(new SimpleMeterRegistry(), true);
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<List<MemberTeamDto>> leader = executor.submit(() -> coalescer.search(condition(10), () -> {
+                queries.incrementAndGet();
+                started.countDown();
+                await(release);
+                return rows();
+            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            List<Future<List<MemberTeamDto>>> followers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                followers.add(executor.submit(() -> coalescer.search(condition(10), () -> {
+                    queries.incrementAndGet();
+                    return rows();
+                })));
+            }
+            while (coalescer.stats().getCoalesced() < 4) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            List<MemberTeamDto> result = leader.get(5, TimeUnit.SECONDS);
+            for (Future<List<MemberTeamDto>> follower : followers) {
+                assertThat(follower.get(5, TimeUnit.SECONDS)).isSameAs(result);
+            }
+            assertThat(queries.get()).isEqualTo(1);
+            assertThat(coalescer.stats().getExecutions()).isEqualTo(1);
+            assertThat(coalescer.stats().getInFlight()).isZero();
+
+            // 끝난 결과는 보관하지 않는다.
+            coalescer.search(condition(10), () -> {
+                queries.incrementAndGet();
+                return rows();
+            });
+            assertThat(queries.get()).isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failureIsSharedAndNotRemembered() throws Exception {
+        MemberSearchCoalescer coalescer = new MemberSearchCoalescer(new SimpleMeterRegistry(), true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<MemberTeamDto>> leader = executor.submit(() -> coalescer.search(condition(10), () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("db down");
+            }));
+            started.await(5, TimeUnit.SECONDS);
+            Future<List<MemberTeamDto>> follower = executor.submit(() -> coalescer.search(condition(10), this::rows));
+            while (coalescer.stats().getCoalesced() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("db down");
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("db down");
+            assertThat(coalescer.search(condition(10), this::rows)).hasSize(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void writeDetachesInFlightSearch() throws Exception {
+        MemberSearchCoalescer coalescer = new MemberSearchCoalescer(new SimpleMeterRegistry(), true);
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<List<MemberTeamDto>> before = executor.submit(() -> coalescer.search(condition(10), () -> {
+                queries.incrementAndGet();
+                started.countDown();
+                await(release);
+                return rows();
+            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            coalescer.onMemberChanged(MemberChangedEvent.bulkDeleted(1, Collections.emptySet()));
+            coalescer.search(condition(10), () -> {
+                queries.incrementAndGet();
+                return rows();
+            });
+            release.countDown();
+            before.get(5, TimeUnit.SECONDS);
+
+            assertThat(queries.get()).isEqualTo(2);
+            assertThat(coalescer.stats().getDetached()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<MemberTeamDto> rows() {
+        return Collections.singletonList(new MemberTeamDto(1L, "member1", 10, 1L, "teamA"));
+    }
+
+    private MemberSearchCondition condition(int ageGoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(ageGoe);
+        return condition;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
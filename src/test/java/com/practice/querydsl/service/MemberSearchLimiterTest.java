@@ -0,0 +1,133 @@
+package com.practice.querydsl.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberSearchLimiterTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    public void rejectOverLimit() throws Exception {
+        MemberSearchLimiter limiter = new MemberSearchLimiter(new SimpleMeterRegistry(), true, 2, 1, 10);
+        CountDownLatch running = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                executor.submit(() -> limiter.execute(() -> {
+                    running.countDown();
+                    await(release);
+                    return 1;
+                }));
+            }
+            running.await(5, TimeUnit.SECONDS);
+
+            assertThatThrownBy(() -> limiter.execute(() -> 1))
+                    .isInstanceOf(SearchOverloadedException.class)
+                    .satisfies(e -> assertThat(((SearchOverloadedException) e).getRetryAfterSeconds()).isPositive());
+            assertThat(limiter.stats().getRejected()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        assertThat(limiter.stats().getInFlight()).isZero();
+        assertThat(limiter.execute(() -> 1)).isEqualTo(1);
+    }
+
+    @Test
+    public void shrinkWhenLatencyRisesAndGrowBack() {
+        MemberSearchLimiter limiter = new MemberSearchLimiter(new SimpleMeterRegistry(), true, 20, 2, 100);
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(10 * MILLIS, 20);
+        }
+        int steady = limiter.getLimit();
+        assertThat(steady).isGreaterThanOrEqualTo(20);
+
+        for (int i = 0; i < 20; i++) {
+            limiter.onSample(200 * MILLIS, steady);
+        }
+        int congested = limiter.getLimit();
+        assertThat(congested).isLessThan(steady);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(10 * MILLIS, limiter.getLimit());
+        }
+        assertThat(limiter.getLimit()).isGreaterThan(congested);
+    }
+
+    @Test
+    public void doNotGrowWhenUnderused() {
+        MemberSearchLimiter limiter = new MemberSearchLimiter(new SimpleMeterRegistry(), true, 20, 2, 100);
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(10 * MILLIS, 1);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    public void shrinkWhenPoolHasWaiters() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AtomicInteger pending = new AtomicInteger(5);
+        Gauge.builder("hikaricp.connections.pending", pending, AtomicInteger::get).register(registry);
+        MemberSearchLimiter limiter = new MemberSearchLimiter(registry, true, 20, 2, 100);
+        limiter.samplePool();
+        assertThat(limiter.stats().getPoolPending()).isEqualTo(5);
+
+        for (int i = 0; i < 30; i++) {
+            limiter.onSample(10 * MILLIS, limiter.getLimit()); // 지연시간은 그대로여도
+        }
+        assertThat(limiter.getLimit()).isLessThan(20);
+    }
+
+    // 풀이 고갈되면 검색이 성공하지 못해 지연시간 표본이 없다. 실패와 풀 대기만으로도 줄어야 한다.
+    @Test
+    public void shrinkOnFailuresWithoutSamples() {
+        MemberSearchLimiter limiter = new MemberSearchLimiter(new SimpleMeterRegistry(), true, 20, 2, 100);
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> limiter.execute(() -> {
+                throw new IllegalStateException("connection is not available, request timed out");
+            })).isInstanceOf(IllegalStateException.class);
+        }
+        assertThat(limiter.getLimit()).isLessThan(20);
+
+        int afterFailures = limiter.getLimit();
+        assertThatThrownBy(() -> limiter.execute(() -> {
+            throw new IllegalArgumentException("bad cursor");
+        })).isInstanceOf(IllegalArgumentException.class);
+        assertThat(limiter.getLimit()).isEqualTo(afterFailures); // 잘못된 요청은 부하가 아니다.
+    }
+
+    @Test
+    public void shrinkWhilePoolHasWaitersWithoutSamples() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AtomicInteger pending = new AtomicInteger(5);
+        Gauge.builder("hikaricp.connections.pending", pending, AtomicInteger::get).register(registry);
+        MemberSearchLimiter limiter = new MemberSearchLimiter(registry, true, 20, 2, 100);
+        for (int i = 0; i < 5; i++) {
+            limiter.samplePool();
+        }
+        assertThat(limiter.getLimit()).isLessThan(20);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
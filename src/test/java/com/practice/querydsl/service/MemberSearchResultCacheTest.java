@@ -0,0 +1,114 @@
+package com.practice.querydsl.service;
+
+import com.practice.querydsl.dto.MemberSearchCondition;
+import com.practice.querydsl.dto.MemberTeamDto;
+import com.practice.querydsl.repository.MemberChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSearchResultCacheTest {
+
+    @Test
+    public void hitAndInvalidate() {
+        MemberSearchResultCache cache = new MemberSearchResultCache(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        cache.get(condition, () -> load(loads));
+        cache.get(condition, () -> load(loads));
+        assertThat(loads.get()).isEqualTo(1);
+
+        // 키는 복사본이라 원본 조건을 바꿔도 기존 항목에 영향이 없다.
+        condition.setTeamName("teamB");
+        cache.get(condition, () -> load(loads));
+        assertThat(loads.get()).isEqualTo(2);
+
+        cache.onMemberChanged(MemberChangedEvent.bulkDeleted(1, Collections.emptySet()));
+        cache.get(condition, () -> load(loads));
+        assertThat(loads.get()).isEqualTo(3);
+        assertThat(cache.stats().getHits()).isEqualTo(1);
+        assertThat(cache.stats().getInvalidations()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        MemberSearchResultCache cache = new MemberSearchResultCache(2, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        MemberSearchCondition a = condition(10);
+        MemberSearchCondition b = condition(20);
+        MemberSearchCondition c = condition(30);
+
+        cache.get(a, () -> load(loads));
+        cache.get(b, () -> load(loads));
+        cache.get(a, () -> load(loads)); // a 를 최근 사용으로
+        cache.get(c, () -> load(loads)); // b 가 밀려난다
+
+        assertThat(cache.stats().getEvictions()).isEqualTo(1);
+        cache.get(a, () -> load(loads));
+        assertThat(loads.get()).isEqualTo(3);
+        cache.get(b, () -> load(loads));
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void expireAfterTtl() {
+        MemberSearchResultCache cache = new MemberSearchResultCache(10, Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(condition(10), () -> load(loads));
+        cache.get(condition(10), () -> load(loads));
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.stats().getExpirations()).isEqualTo(1);
+    }
+
+    @Test
+    public void callersGetTheirOwnCopies() {
+        MemberSearchResultCache cache = new MemberSearchResultCache(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(condition(10), () -> load(loads));
+        cache.get(condition(10), () -> load(loads)).get(0).setUsername("changed");
+
+        assertThat(cache.get(condition(10), () -> load(loads))).extracting("username").containsExactly("member1");
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    // 쓰기 트랜잭션 안에서는 커밋 전 데이터를 볼 수 있으니 캐시를 읽지도 채우지도 않는다.
+    @Test
+    public void bypassInsideReadWriteTransaction() {
+        MemberSearchResultCache cache = new MemberSearchResultCache(10, Duration.ofMinutes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            cache.get(condition(10), () -> load(loads));
+            cache.get(condition(10), () -> load(loads));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.stats().getSize()).isZero();
+    }
+
+    private MemberSearchCondition condition(int ageGoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(ageGoe);
+        return condition;
+    }
+
+    private List<MemberTeamDto> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return Collections.singletonList(new MemberTeamDto(1L, "member1", 10, 1L, "teamA"));
+    }
+}